@@ -0,0 +1,51 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import sudoku.BatchSolver;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The batch solver's boards per second over a mixed corpus by the number of the pool's threads,
+ * every operation solves {@link #BOARDS} boards.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    private static final int BOARDS = 4096;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private BatchSolver solver;
+    private String[] puzzles;
+
+    @Setup
+    public void setup() {
+        pool = new ForkJoinPool(threads);
+        solver = new BatchSolver(pool, BatchSolver.DEFAULT_NODE_LIMIT);
+        puzzles = new String[BOARDS];
+        Corpus[] corpus = Corpus.values();
+        for (int i = 0; i < BOARDS; i++) {
+            puzzles[i] = corpus[i % corpus.length].line();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOARDS)
+    public String[] solve() {
+        return solver.solve(puzzles);
+    }
+}
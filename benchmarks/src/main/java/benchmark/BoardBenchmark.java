@@ -0,0 +1,50 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import sudoku.Sudoku;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The board queries called by the game loops on every turn.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+    private Sudoku sudoku;
+
+    @Setup
+    public void setup() {
+        sudoku = Corpus.MEDIUM.sudoku();
+    }
+
+    @Benchmark
+    public List<Sudoku.Point> getEmptyPoints() {
+        return sudoku.getEmptyPoints();
+    }
+
+    @Benchmark
+    public int iterateEmptyCells() {
+        int sum = 0;
+        for (int k = 0; k < sudoku.getEmptyCount(); k++) {
+            sum += sudoku.getEmptyCell(k);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public boolean isSolved() {
+        return sudoku.isSolved();
+    }
+
+    @Benchmark
+    public String render() {
+        return sudoku.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package benchmark;
+
+import sudoku.Sudoku;
+
+/**
+ * The fixed puzzles of the benchmarks in the 81-char format, '.' is an empty cell.
+ * Every puzzle has exactly one solution.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public enum Corpus {
+    EASY("53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79"),
+    MEDIUM(".2.4.3.1983..97...7...5.38...3......4.2.618.7.7.....63..9.385..2.79........7.2..."),
+    HARD("4.....8.5.3..........7......2.....6.....8.4......1.......6.3.7.5..2.....1.4......"),
+    /**
+     * Designed against the brute-force search in the row-major order, the first row's answer is 987654321.
+     */
+    PATHOLOGICAL("..............3.85..1.2.......5.7.....4...1...9.......5......73..2.1........4...9");
+
+    private final String puzzle;
+
+    Corpus(String puzzle) {
+        this.puzzle = puzzle;
+    }
+
+    public String line() {
+        return puzzle;
+    }
+
+    public byte[][] board() {
+        byte[][] board = new byte[9][9];
+        for (int i = 0; i < 81; i++) {
+            char c = puzzle.charAt(i);
+            board[i / 9][i % 9] = c == '.' ? Sudoku.EMPTY : (byte) (c - '0');
+        }
+        return board;
+    }
+
+    public Sudoku sudoku() {
+        Sudoku sudoku = new Sudoku();
+        sudoku.setBoard(board());
+        return sudoku;
+    }
+
+    /**
+     * Copy the board into the given one, so that it can be set to a sudoku again after being solved.
+     */
+    public static void copy(byte[][] from, byte[][] to) {
+        for (int i = 0; i < 9; i++) {
+            System.arraycopy(from[i], 0, to[i], 0, 9);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import sudoku.Sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the board layouts by the bytes allocated per board (gc.alloc.rate.norm):
+ * the former byte[9][9] board, the flat 81 cells of the Sudoku, and the packed 41 bytes.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FootprintBenchmark {
+    private Sudoku sudoku;
+    private Sudoku copy;
+    private byte[] snapshot;
+    private byte[] packed;
+
+    @Setup
+    public void setup() {
+        sudoku = Corpus.MEDIUM.sudoku();
+        copy = new Sudoku();
+        snapshot = new byte[81];
+        packed = new byte[Sudoku.PACKED_SIZE];
+    }
+
+    @Benchmark
+    public byte[][] nestedBoard() {
+        return new byte[9][9];
+    }
+
+    @Benchmark
+    public byte[] flatBoard() {
+        return new byte[81];
+    }
+
+    @Benchmark
+    public byte[] packedBoard() {
+        return new byte[Sudoku.PACKED_SIZE];
+    }
+
+    @Benchmark
+    public Sudoku newSudoku() {
+        return new Sudoku();
+    }
+
+    @Benchmark
+    public Sudoku copyTo() {
+        sudoku.copyTo(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public byte[] snapshot() {
+        sudoku.snapshot(snapshot);
+        return snapshot;
+    }
+
+    @Benchmark
+    public Sudoku restore() {
+        copy.restore(snapshot);
+        return copy;
+    }
+
+    @Benchmark
+    public byte[] pack() {
+        sudoku.pack(packed, 0);
+        return packed;
+    }
+
+    @Benchmark
+    public Sudoku unpack() {
+        copy.unpack(packed, 0);
+        return copy;
+    }
+}
@@ -0,0 +1,36 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import sudoku.Difficulty;
+import sudoku.Sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GenerationBenchmark {
+
+    @Param
+    public Difficulty difficulty;
+
+    private final Sudoku sudoku = new Sudoku();
+
+    @Benchmark
+    public Sudoku generateUniquePuzzle() {
+        sudoku.generateUniquePuzzle(difficulty);
+        return sudoku;
+    }
+
+    @Benchmark
+    public Sudoku generateSolvablePuzzle() {
+        sudoku.generateSolvablePuzzle();
+        return sudoku;
+    }
+}
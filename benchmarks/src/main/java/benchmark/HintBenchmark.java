@@ -0,0 +1,45 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import sudoku.ConstraintPropagationSolver;
+import sudoku.Sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hint from the maintained candidate masks versus solving a copy of the board for it.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HintBenchmark {
+    @Param({"EASY", "HARD"})
+    public Corpus corpus;
+
+    private final byte[] move = new byte[3];
+    private final Sudoku copy = new Sudoku();
+    private final ConstraintPropagationSolver solver = new ConstraintPropagationSolver();
+    private Sudoku sudoku;
+
+    @Setup
+    public void setup() {
+        sudoku = corpus.sudoku();
+    }
+
+    @Benchmark
+    public byte[] forcedMove() {
+        sudoku.findForcedMove(move);
+        return move;
+    }
+
+    @Benchmark
+    public Sudoku solveForHint() {
+        sudoku.copyTo(copy);
+        solver.solve(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,77 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import p2p.GameJournal;
+import sudoku.Sudoku;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The moves per second journaled with the durability on (an fsync per commit) and off (the page cache only),
+ * by the number of the moves committed together, i.e. the sessions moving in a round of the server's event loop.
+ * The primary score is the commits per second, and the "moves" counter is the moves per second.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JournalBenchmark {
+    @Param({"true", "false"})
+    public boolean durable;
+
+    @Param({"1", "16", "256"})
+    public int movesPerCommit;
+
+    private Path dir;
+    private GameJournal journal;
+    private int[] gameIds;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("journal-benchmark");
+        journal = new GameJournal(dir.resolve("games.journal"), durable);
+        Sudoku sudoku = Corpus.EASY.sudoku();
+        gameIds = new int[movesPerCommit];
+        for (int i = 0; i < movesPerCommit; i++) {
+            gameIds[i] = journal.gameStarted(sudoku, "Player" + i * 2, "Player" + (i * 2 + 1));
+        }
+        journal.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        Path path = dir.resolve("games.journal");
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void commitMoves(MovesPerCommit moves) throws IOException {
+        for (int gameId : gameIds) {
+            journal.move(gameId, 0, 2, 4);
+        }
+        journal.commit();
+        moves.moves += gameIds.length;
+    }
+
+    /**
+     * Reported as the "moves" throughput beside the commits per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class MovesPerCommit {
+        public long moves;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            moves = 0;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package benchmark;
+
+import metrics.Histogram;
+import metrics.Metrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The cost of recording a metric on the hot paths, to be compared with the work it is recorded for,
+ * e.g. a solve of a few microseconds records a histogram once.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    private final LongAdder counter = Metrics.counter("benchmark.counter");
+    private final Histogram histogram = Metrics.histogram("benchmark.histogram");
+    private long value = 1234;
+
+    @Benchmark
+    public void increment() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void record() {
+        histogram.record(value++);
+    }
+
+    @Benchmark
+    public void recordSince() {
+        histogram.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        histogram.record(value);
+    }
+}
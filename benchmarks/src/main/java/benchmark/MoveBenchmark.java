@@ -0,0 +1,74 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import p2p.FrameDecoder;
+import p2p.FrameEncoder;
+import sudoku.Sudoku;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A game server's work per move on a single thread: decode the FILL_IN_NUMBER frame, validate it against the
+ * authoritative board, and then apply and forward it, or reject it with MOVE_REJECTED.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveBenchmark {
+    private final FrameEncoder encoder = new FrameEncoder();
+    private final FrameDecoder decoder = new FrameDecoder();
+    private Sudoku sudoku;
+    private ByteBuffer validMoves;  // (0, 2) accepts 1, 2 and 4, every move replaces the previous one
+    private ByteBuffer rejectedMove;  // (0, 0) is given
+
+    @Setup
+    public void setup() {
+        sudoku = Corpus.EASY.sudoku();
+        byte[] givens = new byte[Sudoku.GIVENS_SIZE];
+        givens[0] = 1;
+        sudoku.unpackGivens(givens, 0);
+        validMoves = encode(new FrameEncoder().fillInNumber(0, 2, 1).fillInNumber(0, 2, 2).fillInNumber(0, 2, 4));
+        rejectedMove = encode(new FrameEncoder().fillInNumber(0, 0, 1));
+    }
+
+    private static ByteBuffer encode(FrameEncoder encoder) {
+        ByteBuffer buffer = encoder.buffer();
+        buffer.flip();
+        return buffer;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(3)
+    public ByteBuffer acceptedMoves() {
+        validMoves.rewind();
+        while (decoder.nextFrame(validMoves)) {
+            move();
+            decoder.endFrame();
+        }
+        return encoder.buffer().clear();
+    }
+
+    @Benchmark
+    public ByteBuffer rejectedMove() {
+        rejectedMove.rewind();
+        decoder.nextFrame(rejectedMove);
+        move();
+        decoder.endFrame();
+        return encoder.buffer().clear();
+    }
+
+    private void move() {
+        byte row = decoder.readByte(), col = decoder.readByte(), num = decoder.readByte();
+        if (sudoku.isValidPut(row, col, num)) {
+            sudoku.put(row, col, num);
+            encoder.fillInNumber(row, col, num);
+        } else {
+            encoder.moveRejected(row, col, num);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import sudoku.PuzzleFile;
+import sudoku.Sudoku;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode the boards of a mapped puzzle file into a single sudoku, in order or at random indexes.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PuzzleFileBenchmark {
+    private static final int BOARDS = 1 << 16;
+
+    @Param
+    public PuzzleFile.Format format;
+
+    private Path path;
+    private PuzzleFile.Reader reader;
+    private final Sudoku sudoku = new Sudoku();
+
+    @Setup
+    public void setup() throws IOException {
+        path = Files.createTempFile("puzzles", "." + format.name().toLowerCase());
+        Corpus[] corpus = Corpus.values();
+        try (PuzzleFile.Writer writer = new PuzzleFile.Writer(path, format)) {
+            for (int i = 0; i < BOARDS; i++) {
+                writer.write(corpus[i % corpus.length].sudoku());
+            }
+        }
+        reader = new PuzzleFile.Reader(path, format);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        Files.delete(path);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BOARDS)
+    public Sudoku scan() {
+        reader.seek(0);
+        while (reader.next(sudoku)) {
+        }
+        return sudoku;
+    }
+
+    @Benchmark
+    public Sudoku randomRead() {
+        reader.read(ThreadLocalRandom.current().nextInt(BOARDS), sudoku);
+        return sudoku;
+    }
+}
@@ -0,0 +1,48 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import sudoku.ConstraintPropagationSolver;
+import sudoku.SolutionCache;
+import sudoku.Sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A solution from the cache, canonicalizing the board on every lookup, versus solving a copy of the board.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SolutionCacheBenchmark {
+    @Param({"EASY", "HARD"})
+    public Corpus corpus;
+
+    private final byte[] solution = new byte[81];
+    private final Sudoku copy = new Sudoku();
+    private final ConstraintPropagationSolver solver = new ConstraintPropagationSolver();
+    private final SolutionCache cache = new SolutionCache(SolutionCache.DEFAULT_CAPACITY);
+    private Sudoku sudoku;
+
+    @Setup
+    public void setup() {
+        sudoku = corpus.sudoku();
+        cache.getSolution(sudoku, solution);
+    }
+
+    @Benchmark
+    public byte[] cacheHit() {
+        cache.getSolution(sudoku, solution);
+        return solution;
+    }
+
+    @Benchmark
+    public Sudoku solve() {
+        sudoku.copyTo(copy);
+        solver.solve(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,67 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import sudoku.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solve each puzzle of the corpus by each solver, including re-setting the puzzle (an 81-cell copy and validation).
+ * The DFS over the pathological puzzle takes seconds per operation.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SolverBenchmark {
+
+    public enum Engine {
+        DFS {
+            Solver create() {
+                return new DfsSolver();
+            }
+        },
+        PROPAGATION {
+            Solver create() {
+                return new ConstraintPropagationSolver();
+            }
+        },
+        DANCING_LINKS {
+            Solver create() {
+                return new DancingLinksSolver();
+            }
+        };
+
+        abstract Solver create();
+    }
+
+    @Param
+    public Corpus corpus;
+
+    @Param
+    public Engine engine;
+
+    private Solver solver;
+    private Sudoku sudoku;
+    private byte[][] puzzle;
+    private byte[][] board;
+
+    @Setup
+    public void setup() {
+        solver = engine.create();
+        sudoku = new Sudoku();
+        puzzle = corpus.board();
+        board = new byte[9][9];
+    }
+
+    @Benchmark
+    public Sudoku solve() {
+        Corpus.copy(puzzle, board);
+        sudoku.setBoard(board);
+        sudoku.generateAnswer(solver);
+        return sudoku;
+    }
+}
@@ -0,0 +1,36 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import sudoku.DancingLinksSolver;
+import sudoku.Sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prove the puzzle has a unique answer by counting its solutions up to two, the check used by the generator.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UniquenessBenchmark {
+
+    @Param
+    public Corpus corpus;
+
+    private final DancingLinksSolver solver = new DancingLinksSolver();
+    private Sudoku sudoku;
+
+    @Setup
+    public void setup() {
+        sudoku = corpus.sudoku();
+    }
+
+    @Benchmark
+    public int countSolutionsUpToTwo() {
+        return solver.countSolutions(sudoku, 2);
+    }
+}
@@ -0,0 +1,72 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sudoku.Sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The validation of a single put (the isPutViolating's hot path) and of a whole board.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValidationBenchmark {
+    private Sudoku sudoku;
+    private Sudoku puzzled;  // the same board whose filled cells are the givens
+    private byte[][] puzzle;
+
+    @Setup
+    public void setup() {
+        sudoku = Corpus.EASY.sudoku();
+        puzzle = Corpus.EASY.board();
+        puzzled = Corpus.EASY.sudoku();
+        byte[] givens = new byte[Sudoku.GIVENS_SIZE];
+        for (int i = 0; i < 81; i++) {
+            if (!puzzled.isEmpty(i / 9, i % 9)) {
+                givens[i / 8] |= 1 << (i % 8);
+            }
+        }
+        puzzled.unpackGivens(givens, 0);
+    }
+
+    /**
+     * (0, 2) accepts 1, 2 and 4, put them in turn so that every put replaces the previous one.
+     */
+    @Benchmark
+    public void validPuts() {
+        sudoku.put(0, 2, 1);
+        sudoku.put(0, 2, 2);
+        sudoku.put(0, 2, 4);
+    }
+
+    /**
+     * The same puts, checked against the givens first.
+     */
+    @Benchmark
+    public void validPutsOnPuzzle() {
+        puzzled.put(0, 2, 1);
+        puzzled.put(0, 2, 2);
+        puzzled.put(0, 2, 4);
+    }
+
+    @Benchmark
+    public void violatingPut(Blackhole blackhole) {
+        try {
+            sudoku.put(0, 2, 5);
+        } catch (Sudoku.InvalidException err) {
+            blackhole.consume(err);
+        }
+    }
+
+    @Benchmark
+    public Sudoku setBoard() {
+        sudoku.setBoard(puzzle);
+        return sudoku;
+    }
+}
@@ -0,0 +1,72 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import p2p.FrameDecoder;
+import p2p.FrameEncoder;
+import p2p.OpCodes;
+import sudoku.Sudoku;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GAME_STARTED board transfer through the frame codec, over in-memory streams as the blocking
+ * P2PServer and P2PClient do it, and over a read buffer as the NioGameServer does it.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireBenchmark {
+    private final FrameEncoder encoder = new FrameEncoder();
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(2 + 1 + 81 + Sudoku.GIVENS_SIZE);
+    private Sudoku sudoku;
+    private byte[] encoded;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        sudoku = Corpus.MEDIUM.sudoku();
+        encoder.gameStarted(sudoku).writeTo(out);
+        encoded = out.toByteArray();
+        buffer = ByteBuffer.wrap(encoded);
+    }
+
+    @Benchmark
+    public int writeGameStarted() throws IOException {
+        out.reset();
+        encoder.gameStarted(sudoku).writeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public Sudoku readGameStarted() throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        if (decoder.readFrame(in) != OpCodes.GAME_STARTED) {
+            throw new IllegalStateException("OpCode incorrect.");
+        }
+        Sudoku sudoku = new Sudoku();
+        decoder.readBoard(sudoku);
+        return sudoku;
+    }
+
+    @Benchmark
+    public Sudoku decodeGameStartedFromBuffer() {
+        buffer.clear();
+        if (!decoder.nextFrame(buffer) || decoder.getOpCode() != OpCodes.GAME_STARTED) {
+            throw new IllegalStateException("OpCode incorrect.");
+        }
+        Sudoku sudoku = new Sudoku();
+        decoder.readBoard(sudoku);
+        decoder.endFrame();
+        return sudoku;
+    }
+}
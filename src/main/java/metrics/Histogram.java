@@ -0,0 +1,72 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values, e.g. the latencies in nanoseconds, in the fixed power-of-two buckets:
+ * the bucket b counts the values in [2^(b-1), 2^b), and the bucket 0 counts the zeros.
+ * Recording is an index computation and a striped {@link LongAdder} increment, with neither locks nor allocation,
+ * and the percentiles are reported as the upper bounds of the buckets, i.e. within a factor of 2.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class Histogram {
+    private final static int BUCKETS = 64;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+
+    Histogram() {
+        for (int b = 0; b < BUCKETS; b++) {
+            buckets[b] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param value negative values are recorded as 0
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+        sum.add(value);
+    }
+
+    /**
+     * Record the nanoseconds elapsed since the start, taken by {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @param percentile in [0, 100]
+     * @return the upper bound of the bucket where the percentile falls, or 0 if nothing is recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            counts[b] = buckets[b].sum();
+            total += counts[b];
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= Math.max(rank, 1) && counts[b] > 0) {
+                return b == 0 ? 0 : b == BUCKETS - 1 ? Long.MAX_VALUE : (1L << b) - 1;
+            }
+        }
+        return 0;
+    }
+}
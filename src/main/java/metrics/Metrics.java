@@ -0,0 +1,137 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The process-wide registry of the metrics, the hot paths hold their metrics in static fields, e.g.
+ * {@code private static final LongAdder NODES = Metrics.counter("solver.nodes");}, so that recording is a single
+ * striped increment without any lookup. The counters only grow, while the gauges go up and down, e.g. the active sessions.
+ * The metrics are published through JMX by {@link #registerMBean()} and in the plain text by {@link #dump(Appendable)}.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class Metrics implements MetricsMXBean {
+    public final static String OBJECT_NAME = "sudoku:type=Metrics";
+    private final static Metrics INSTANCE = new Metrics();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the counter of the name, which is created once and then shared
+     */
+    public static LongAdder counter(String name) {
+        return INSTANCE.counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * @return the gauge of the name, which is created once and then shared
+     */
+    public static LongAdder gauge(String name) {
+        return INSTANCE.gauges.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * @return the histogram of the name, which is created once and then shared
+     */
+    public static Histogram histogram(String name) {
+        return INSTANCE.histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Publish the metrics through the platform MBean server, registering again has no effect.
+     */
+    public static void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+            }
+        } catch (JMException err) {
+            throw new IllegalStateException(err);
+        }
+    }
+
+    /**
+     * Write every metric in a line sorted by the name: "name value" for the counters and the gauges, and
+     * "name count=.. sum=.. p50=.. p99=.. p999=.." for the histograms.
+     */
+    public static void dump(Appendable out) throws IOException {
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(INSTANCE.counters).entrySet()) {
+            out.append(counter.getKey()).append(' ').append(Long.toString(counter.getValue().sum())).append('\n');
+        }
+        for (Map.Entry<String, LongAdder> gauge : new TreeMap<>(INSTANCE.gauges).entrySet()) {
+            out.append(gauge.getKey()).append(' ').append(Long.toString(gauge.getValue().sum())).append('\n');
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(INSTANCE.histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            out.append(String.format("%s count=%d sum=%d p50=%d p99=%d p999=%d\n", entry.getKey(),
+                    histogram.getCount(), histogram.getSum(), histogram.getPercentile(50),
+                    histogram.getPercentile(99), histogram.getPercentile(99.9)));
+        }
+    }
+
+    /**
+     * Dump the metrics to the stream once the JVM shuts down, e.g. by Ctrl-C.
+     */
+    public static void dumpOnShutdown(PrintStream out) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                dump(out);
+            } catch (IOException ignored) {  // never thrown by a PrintStream
+            }
+            out.flush();
+        }));
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return sums(counters);
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        return sums(gauges);
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> adders) {
+        Map<String, Long> sums = new TreeMap<>();
+        adders.forEach((name, adder) -> sums.put(name, adder.sum()));
+        return sums;
+    }
+
+    @Override
+    public Map<String, Long> getHistograms() {
+        Map<String, Long> values = new TreeMap<>();
+        histograms.forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".sum", histogram.getSum());
+            values.put(name + ".p50", histogram.getPercentile(50));
+            values.put(name + ".p99", histogram.getPercentile(99));
+            values.put(name + ".p999", histogram.getPercentile(99.9));
+        });
+        return values;
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        try {
+            dump(out);
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);  // never thrown by a StringBuilder
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * The metrics published through JMX under {@link Metrics#OBJECT_NAME}.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public interface MetricsMXBean {
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getGauges();
+
+    /**
+     * @return the count, the sum, p50, p99 and p999 of every histogram, keyed by "name.count", "name.p50" and so on
+     */
+    Map<String, Long> getHistograms();
+
+    /**
+     * @return the text dump, see {@link Metrics#dump(Appendable)}
+     */
+    String dump();
+}
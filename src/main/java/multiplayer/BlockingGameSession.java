@@ -0,0 +1,249 @@
+package multiplayer;
+
+import metrics.Histogram;
+import metrics.Metrics;
+import p2p.FrameDecoder;
+import p2p.FrameEncoder;
+import p2p.OpCodes;
+import sudoku.Difficulty;
+import sudoku.SolutionCache;
+import sudoku.Sudoku;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A game between two matched players written in the blocking style, it's run on its own (virtual) thread.
+ * The first player moves first and then they take turns, and an invalid move is rejected, just like the {@link GameSession}.
+ * Every player's frames are read by a (virtual) thread of its own, so that a hint is answered to either player
+ * at any time of the game, the frames are handled one at a time under the session's lock.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+class BlockingGameSession implements Runnable {
+    private final static LongAdder MOVES_ACCEPTED = Metrics.counter("moves.accepted");
+    private final static LongAdder MOVES_REJECTED = Metrics.counter("moves.rejected");
+    private final static Histogram TURN_NANOS = Metrics.histogram("game.turn.nanos");
+    private final static LongAdder ACTIVE_SESSIONS = Metrics.gauge("sessions.active");
+    private final static LongAdder HINTS = Metrics.counter("hints");
+    private final Player[] players;
+    private final Sudoku sudoku;
+    private final byte[] forcedMove = new byte[3];
+    private final byte[] startBoard = new byte[81];
+    private byte[] solution;  // of the start board, found on the first hint which has no forced move
+    private int turn;  // the index of the player moving
+    private long turnStartNanos;
+
+    BlockingGameSession(Player first, Player second, Sudoku sudoku) {
+        this.players = new Player[]{first, second};
+        this.sudoku = sudoku;
+        sudoku.snapshot(startBoard);
+    }
+
+    @Override
+    public void run() {
+        ACTIVE_SESSIONS.increment();
+        try {
+            synchronized (this) {
+                players[0].encoder.submitName(players[1].name).writeTo(players[0].out);
+                players[1].encoder.submitName(players[0].name).writeTo(players[1].out);
+                startGame();
+            }
+            Thread secondReader = Thread.ofVirtual().name("game-session-reader").start(() -> readFrames(players[1]));
+            readFrames(players[0]);
+            secondReader.join();
+        } catch (IOException ignored) {
+            // the game is lost if either player is gone
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ACTIVE_SESSIONS.decrement();
+            closePlayers();
+        }
+    }
+
+    private void startGame() throws IOException {
+        players[0].encoder.gameStarted(sudoku).opCode(OpCodes.FIRST_MOVE).writeTo(players[0].out);
+        players[1].encoder.gameStarted(sudoku).writeTo(players[1].out);
+        turnStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Handle the player's frames until the game is over, and then close both players, which also stops the other
+     * player's reader.
+     */
+    private void readFrames(Player player) {
+        try {
+            boolean over;
+            do {
+                byte opCode = player.decoder.readFrame(player.in);
+                synchronized (this) {
+                    over = onFrame(player, opCode);
+                }
+            } while (!over);
+        } catch (IOException | IllegalStateException | Sudoku.SudokuException ignored) {
+            // the game is lost if either player is gone or breaks the protocol
+        } finally {
+            closePlayers();
+        }
+    }
+
+    /**
+     * @return true if the game is over
+     */
+    private boolean onFrame(Player player, byte opCode) throws IOException {
+        switch (opCode) {
+            case OpCodes.HINT_REQUEST:
+                onHintRequest(player, player.decoder.readByte(), player.decoder.readByte());
+                return false;
+            case OpCodes.FILL_IN_NUMBER:
+                if (player != players[turn]) {
+                    throw new IllegalStateException("Not the player's turn.");
+                }
+                return onFillInNumber(player, players[1 - turn],
+                        player.decoder.readByte(), player.decoder.readByte(), player.decoder.readByte());
+            default:
+                throw new IllegalStateException("OpCode incorrect, given " + opCode);
+        }
+    }
+
+    /**
+     * @return true if the move solves the sudoku
+     */
+    private boolean onFillInNumber(Player player, Player opponent, byte row, byte col, byte num) throws IOException {
+        if (!sudoku.isValidPut(row, col, num)) {
+            MOVES_REJECTED.increment();
+            player.encoder.moveRejected(row, col, num).writeTo(player.out);  // still the player's turn
+            return false;
+        }
+        sudoku.put(row, col, num);
+        MOVES_ACCEPTED.increment();
+        TURN_NANOS.recordSince(turnStartNanos);
+        opponent.encoder.fillInNumber(row, col, num).writeTo(opponent.out);
+        int units = sudoku.getCompletedUnits(row, col);
+        if (units != 0) {
+            player.encoder.unitsCompleted(row, col, units).writeTo(player.out);
+            opponent.encoder.unitsCompleted(row, col, units).writeTo(opponent.out);
+        }
+        if (sudoku.isSolved()) {
+            for (Player p : players) {
+                p.encoder.opCode(OpCodes.GAME_OVER).writeTo(p.out);
+            }
+            return true;
+        }
+        turn = 1 - turn;
+        turnStartNanos = System.nanoTime();
+        return false;
+    }
+
+    /**
+     * Answer the hint from the board without changing it, whoever's turn it is, like {@link Session}.
+     */
+    private void onHintRequest(Player player, byte row, byte col) throws IOException {
+        if (row < 0 || row > 8 || col < 0 || col > 8) {
+            throw new IllegalStateException("The cell is out of the board.");
+        }
+        HINTS.increment();
+        boolean forced = sudoku.findForcedMove(forcedMove) || findAnswer(row, col);
+        player.encoder.hint(row, col, sudoku.getCandidates(row, col), forced ? forcedMove : null).writeTo(player.out);
+    }
+
+    /**
+     * Take the requested cell's answer as the move from the start board's solution, when no move is forced by the rules.
+     * @return false if the cell is not empty, or the board has no solution
+     */
+    private boolean findAnswer(byte row, byte col) {
+        if (!sudoku.isEmpty(row, col)) {
+            return false;
+        }
+        if (solution == null) {
+            Sudoku start = new Sudoku();
+            start.restore(startBoard);
+            byte[] solution = new byte[81];
+            if (!SolutionCache.getDefault().getSolution(start, solution)) {
+                return false;
+            }
+            this.solution = solution;
+        }
+        forcedMove[0] = row;
+        forcedMove[1] = col;
+        forcedMove[2] = solution[row * 9 + col];
+        return true;
+    }
+
+    private void closePlayers() {
+        for (Player player : players) {
+            player.close();
+        }
+    }
+
+    static class Player {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final OutputStream out;
+        private final FrameEncoder encoder = new FrameEncoder();
+        private final FrameDecoder decoder = new FrameDecoder();
+        private String name;
+        private Difficulty difficulty;
+
+        Player(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        /**
+         * Read the player's SUBMIT_NAME or JOIN_LOBBY.
+         */
+        void readJoinLobby() throws IOException {
+            byte opCode = readAndAssertOpCode(OpCodes.SUBMIT_NAME, OpCodes.JOIN_LOBBY);
+            difficulty = opCode == OpCodes.JOIN_LOBBY ? decoder.readDifficulty() : Difficulty.MEDIUM;
+            name = decoder.readName();
+        }
+
+        private byte readAndAssertOpCode(byte... expectedOpCodes) throws IOException {
+            byte opCode = decoder.readFrame(in);
+            for (byte expectedOpCode : expectedOpCodes) {
+                if (expectedOpCode == opCode) {
+                    return opCode;
+                }
+            }
+            throw new IllegalStateException("OpCode incorrect, given " + opCode);
+        }
+
+        /**
+         * Check if the waiting player is still there, by a read blocking for at most a millisecond. A player sends
+         * nothing until the game starts, so a byte read breaks the protocol, and the player is taken as gone too.
+         */
+        boolean isConnected() {
+            try {
+                socket.setSoTimeout(1);
+                try {
+                    in.read();  // -1 if gone
+                    return false;
+                } finally {
+                    socket.setSoTimeout(0);
+                }
+            } catch (SocketTimeoutException nothingSent) {
+                return true;
+            } catch (IOException err) {
+                return false;
+            }
+        }
+
+        Difficulty getDifficulty() {
+            return difficulty;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
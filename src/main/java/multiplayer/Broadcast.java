@@ -0,0 +1,121 @@
+package multiplayer;
+
+import metrics.Metrics;
+import p2p.FrameEncoder;
+import p2p.OpCodes;
+import sudoku.Sudoku;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fan out a game's events to its spectators. Every event is encoded once into an immutable frame, and the
+ * spectators' connections queue their own views of the very same bytes until written, so nothing is copied per spectator.
+ * A spectator which falls more than {@link #MAX_BACKLOG_BYTES} behind is handled by the {@link SpectatorPolicy},
+ * counted in the "spectators.coalesced" or "spectators.dropped" metrics.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+class Broadcast {
+    final static int MAX_BACKLOG_BYTES = 8192;
+    private final static LongAdder COALESCED = Metrics.counter("spectators.coalesced");
+    private final static LongAdder DROPPED = Metrics.counter("spectators.dropped");
+    private final Sudoku sudoku;
+    private final SpectatorPolicy policy;
+    private final List<Connection> spectators = new ArrayList<>();
+    private final FrameEncoder encoder = new FrameEncoder();
+    private ByteBuffer snapshot;  // the current board's GAME_STARTED, encoded once until the board changes
+
+    Broadcast(Sudoku sudoku, SpectatorPolicy policy) {
+        this.sudoku = sudoku;
+        this.policy = policy;
+    }
+
+    /**
+     * Send the players' names and then the current board to the spectator, followed by the later events.
+     */
+    void add(Connection spectator, String firstName, String secondName) {
+        spectator.writeSubmitName(firstName);
+        spectator.writeSubmitName(secondName);
+        spectator.writeShared(snapshot());
+        spectators.add(spectator);
+    }
+
+    void remove(Connection spectator) {
+        spectators.remove(spectator);
+    }
+
+    void fillInNumber(int row, int col, int num) {
+        snapshot = null;
+        if (!spectators.isEmpty()) {
+            publish(freeze(encoder.fillInNumber(row, col, num)));
+        }
+    }
+
+    void fillInNumbers(byte[] moves, int count) {
+        snapshot = null;
+        if (!spectators.isEmpty()) {
+            publish(freeze(encoder.fillInNumbers(0, moves, 0, count)));
+        }
+    }
+
+    void gameOver() {
+        if (spectators.isEmpty()) {
+            return;
+        }
+        publish(freeze(encoder.opCode(OpCodes.GAME_OVER)));
+        for (Connection spectator : spectators) {
+            spectator.closeAfterFlush();
+        }
+        spectators.clear();
+    }
+
+    /**
+     * Close the spectators as the game is lost.
+     */
+    void close() {
+        for (Connection spectator : new ArrayList<>(spectators)) {
+            spectator.close();
+        }
+        spectators.clear();
+    }
+
+    int getSpectators() {
+        return spectators.size();
+    }
+
+    private void publish(ByteBuffer frame) {
+        for (int i = spectators.size() - 1; i >= 0; i--) {  // backwards, as a dropped spectator removes itself
+            Connection spectator = spectators.get(i);
+            if (spectator.getSharedBacklog() + frame.remaining() <= MAX_BACKLOG_BYTES) {
+                spectator.writeShared(frame);
+            } else if (policy == SpectatorPolicy.COALESCE) {
+                COALESCED.increment();
+                spectator.dropSharedBacklog();
+                spectator.writeShared(snapshot());  // already includes this event
+            } else {
+                DROPPED.increment();
+                spectator.close();
+            }
+        }
+    }
+
+    private ByteBuffer snapshot() {
+        if (snapshot == null) {
+            snapshot = freeze(encoder.gameStarted(sudoku));
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the encoded frame in an immutable buffer shared by the spectators
+     */
+    private ByteBuffer freeze(FrameEncoder encoder) {
+        ByteBuffer encoded = encoder.buffer();
+        encoded.flip();
+        ByteBuffer frame = ByteBuffer.allocate(encoded.remaining()).put(encoded).flip();
+        encoded.clear();
+        return frame.asReadOnlyBuffer();
+    }
+}
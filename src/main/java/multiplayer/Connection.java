@@ -0,0 +1,295 @@
+package multiplayer;
+
+import metrics.Histogram;
+import metrics.Metrics;
+import p2p.FrameDecoder;
+import p2p.FrameEncoder;
+import p2p.OpCodes;
+import sudoku.Difficulty;
+import sudoku.Sudoku;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A player's or a spectator's non-blocking connection, the frames are decoded from its read buffer once they are complete,
+ * and the outgoing frames are encoded into its write buffer until the channel is writable.
+ * A spectator's game events are the frames shared with the other spectators, queued after the write buffer, see {@link Broadcast}.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+class Connection {
+    private final static int MAX_NAME_FRAME_LENGTH = 2 + 2 + 255;
+    private final static LongAdder BYTES_IN = Metrics.counter("net.bytes_in");
+    private final static LongAdder BYTES_OUT = Metrics.counter("net.bytes_out");
+    private final static Histogram READ_NANOS = Metrics.histogram("net.read.nanos");
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ByteBuffer in = ByteBuffer.allocate(2 + FrameDecoder.MAX_FRAME_LENGTH);
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final FrameEncoder encoder = new FrameEncoder(4096);
+    private final byte[] moves = new byte[FrameDecoder.MAX_BATCH_MOVES * 3];
+    private final Matchmaker<Connection> matchmaker;
+    private final Matchmaker<Connection> coopMatchmaker;
+    private final Map<String, Session> sessionsByPlayer;
+    private final ArrayDeque<ByteBuffer> sharedFrames = new ArrayDeque<>();
+    private int sharedBacklog;  // the bytes of the shared frames not written yet
+    private Matchmaker<Connection> joinedMatchmaker;
+    private Session session;
+    private Broadcast watching;
+    private String name;
+    private Difficulty difficulty;
+    private boolean closeAfterFlush;
+
+    /**
+     * @param sessionsByPlayer the sessions of the players' names, for the spectators to find
+     */
+    Connection(SocketChannel channel, SelectionKey key, Matchmaker<Connection> matchmaker,
+               Matchmaker<Connection> coopMatchmaker, Map<String, Session> sessionsByPlayer) {
+        this.channel = channel;
+        this.key = key;
+        this.matchmaker = matchmaker;
+        this.coopMatchmaker = coopMatchmaker;
+        this.sessionsByPlayer = sessionsByPlayer;
+    }
+
+    void onReadable() throws IOException {
+        long start = System.nanoTime();
+        int read = channel.read(in);
+        READ_NANOS.recordSince(start);
+        if (read < 0) {
+            throw new EOFException();
+        }
+        BYTES_IN.add(read);
+        in.flip();
+        while (isOpen() && decoder.nextFrame(in)) {
+            readMessage();
+            decoder.endFrame();
+        }
+        in.compact();
+    }
+
+    private void readMessage() {
+        switch (decoder.getOpCode()) {
+            case OpCodes.SUBMIT_NAME:
+                joinLobby(matchmaker, Difficulty.MEDIUM, decoder.readName());
+                break;
+            case OpCodes.JOIN_LOBBY:
+                joinLobby(matchmaker, decoder.readDifficulty(), decoder.readName());
+                break;
+            case OpCodes.JOIN_COOP:
+                joinLobby(coopMatchmaker, decoder.readDifficulty(), decoder.readName());
+                break;
+            case OpCodes.SPECTATE:
+                spectate(decoder.readName());
+                break;
+            case OpCodes.FILL_IN_NUMBER:
+                if (session == null) {
+                    throw new IllegalStateException("The game has not started.");
+                }
+                session.onFillInNumber(this, decoder.readByte(), decoder.readByte(), decoder.readByte());
+                break;
+            case OpCodes.HINT_REQUEST:
+                if (session == null) {
+                    throw new IllegalStateException("The game has not started.");
+                }
+                session.onHintRequest(this, decoder.readByte(), decoder.readByte());
+                break;
+            case OpCodes.FILL_IN_NUMBERS:
+                if (session == null) {
+                    throw new IllegalStateException("The game has not started.");
+                }
+                int seq = decoder.readUnsignedShort();
+                session.onFillInNumbers(this, seq, moves, decoder.readMoves(moves));
+                break;
+            default:
+                throw new IllegalStateException("OpCode incorrect, given " + decoder.getOpCode());
+        }
+    }
+
+    private void spectate(String playerName) {
+        if (name != null || watching != null) {
+            throw new IllegalStateException("The name has been submitted.");
+        }
+        Session session = sessionsByPlayer.get(playerName);
+        if (session == null) {
+            writeOpCode(OpCodes.GAME_OVER);  // no such game, or it's over
+            closeAfterFlush();
+        } else {
+            watching = session.getBroadcast();
+            session.spectate(this);
+        }
+    }
+
+    private void joinLobby(Matchmaker<Connection> matchmaker, Difficulty difficulty, String name) {
+        if (this.name != null || watching != null) {
+            throw new IllegalStateException("The name has been submitted.");
+        }
+        this.name = name;
+        this.difficulty = difficulty;
+        this.joinedMatchmaker = matchmaker;
+        matchmaker.enqueue(this, difficulty);
+    }
+
+    void onWritable() throws IOException {
+        ByteBuffer out = encoder.buffer();
+        out.flip();
+        BYTES_OUT.add(channel.write(out));
+        out.compact();
+        while (out.position() == 0 && !sharedFrames.isEmpty()) {
+            ByteBuffer frame = sharedFrames.peek();
+            int written = channel.write(frame);
+            sharedBacklog -= written;
+            BYTES_OUT.add(written);
+            if (frame.hasRemaining()) {
+                break;
+            }
+            sharedFrames.poll();
+        }
+        if (out.position() == 0 && sharedFrames.isEmpty()) {
+            if (closeAfterFlush) {
+                close();
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    void writeSubmitName(String name) {
+        if (reserve(MAX_NAME_FRAME_LENGTH)) {
+            encoder.submitName(name);
+        }
+    }
+
+    void writeGameStarted(Sudoku sudoku) {
+        if (reserve(2 + 1 + 81 + Sudoku.GIVENS_SIZE)) {
+            encoder.gameStarted(sudoku);
+        }
+    }
+
+    void writeFillInNumber(int row, int col, int num) {
+        if (reserve(2 + 4)) {
+            encoder.fillInNumber(row, col, num);
+        }
+    }
+
+    void writeFillInNumbers(int seq, byte[] moves, int count) {
+        if (reserve(2 + 4 + count * 3)) {
+            encoder.fillInNumbers(seq, moves, 0, count);
+        }
+    }
+
+    void writeMovesAcked(int seq, int count, long accepted) {
+        if (reserve(2 + 12)) {
+            encoder.movesAcked(seq, count, accepted);
+        }
+    }
+
+    void writeUnitsCompleted(int row, int col, int units) {
+        if (reserve(2 + 4)) {
+            encoder.unitsCompleted(row, col, units);
+        }
+    }
+
+    void writeHint(int row, int col, int candidates, byte[] forcedMove) {
+        if (reserve(2 + 9)) {
+            encoder.hint(row, col, candidates, forcedMove);
+        }
+    }
+
+    void writeMoveRejected(int row, int col, int num) {
+        if (reserve(2 + 4)) {
+            encoder.moveRejected(row, col, num);
+        }
+    }
+
+    /**
+     * Queue a view of the frame shared by the spectators, the frame is never modified.
+     */
+    void writeShared(ByteBuffer frame) {
+        if (isOpen()) {
+            sharedFrames.add(frame.duplicate());
+            sharedBacklog += frame.remaining();
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    int getSharedBacklog() {
+        return sharedBacklog;
+    }
+
+    /**
+     * Drop the shared frames not written yet, except the one partially written.
+     */
+    void dropSharedBacklog() {
+        ByteBuffer head = sharedFrames.peek();
+        boolean partial = head != null && head.position() > 0;
+        sharedFrames.clear();
+        sharedBacklog = 0;
+        if (partial) {
+            sharedFrames.add(head);
+            sharedBacklog = head.remaining();
+        }
+    }
+
+    void writeOpCode(byte opCode) {
+        if (reserve(2 + 1)) {
+            encoder.opCode(opCode);
+        }
+    }
+
+    /**
+     * Make room for a frame which will be written once the channel is writable.
+     * @return false if the connection is closed or the peer doesn't read, and then the connection is closed
+     */
+    private boolean reserve(int frameLength) {
+        if (!isOpen()) {
+            return false;
+        }
+        if (encoder.buffer().remaining() < frameLength) {
+            close();
+            return false;
+        }
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return true;
+    }
+
+    void closeAfterFlush() {
+        closeAfterFlush = true;
+    }
+
+    void close() {
+        if (isOpen()) {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            if (watching != null) {
+                watching.remove(this);
+            } else if (session != null) {
+                sessionsByPlayer.remove(name, session);
+                session.onDisconnected(this);
+            } else if (joinedMatchmaker != null) {
+                joinedMatchmaker.cancel(this, difficulty);
+            }
+        }
+    }
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    void setSession(Session session) {
+        this.session = session;
+    }
+
+    String getName() {
+        return name;
+    }
+}
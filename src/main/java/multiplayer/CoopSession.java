@@ -0,0 +1,52 @@
+package multiplayer;
+
+import p2p.FrameDecoder;
+import p2p.GameJournal;
+import sudoku.Sudoku;
+
+/**
+ * The state of a co-op game, both players fill in the same board at the same time with pipelined FILL_IN_NUMBERS.
+ * Every move is validated against the authoritative board in the order of arrival, the sender gets a MOVES_ACKED
+ * per frame and the partner gets the accepted moves in a single FILL_IN_NUMBERS, see {@link p2p.MovePipeline}.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+class CoopSession extends Session {
+    private final int[] forwardedSeqs = new int[2];
+    private final byte[] accepted = new byte[FrameDecoder.MAX_BATCH_MOVES * 3];
+
+    CoopSession(Connection first, Connection second, Sudoku sudoku, SpectatorPolicy policy, GameJournal journal) {
+        super(first, second, sudoku, policy, journal);
+    }
+
+    @Override
+    void onFillInNumber(Connection player, byte row, byte col, byte num) {
+        throw new IllegalStateException("The co-op moves should be sent in FILL_IN_NUMBERS.");
+    }
+
+    @Override
+    void onFillInNumbers(Connection player, int seq, byte[] moves, int count) {
+        if (over) {
+            return;
+        }
+        long acceptedBits = 0;
+        int acceptedCount = 0;
+        for (int i = 0; i < count; i++) {
+            byte row = moves[i * 3], col = moves[i * 3 + 1], num = moves[i * 3 + 2];
+            if (sudoku.isValidPut(row, col, num)) {
+                apply(row, col, num);
+                acceptedBits |= 1L << i;
+                System.arraycopy(moves, i * 3, accepted, acceptedCount * 3, 3);
+                acceptedCount++;
+            }
+        }
+        MOVES_REJECTED.add(count - acceptedCount);
+        player.writeMovesAcked(seq, count, acceptedBits);
+        int partner = players[0] == player ? 1 : 0;
+        if (acceptedCount > 0) {
+            players[partner].writeFillInNumbers(forwardedSeqs[partner], accepted, acceptedCount);
+            forwardedSeqs[partner] = (forwardedSeqs[partner] + acceptedCount) & 0xFFFF;
+            broadcast.fillInNumbers(accepted, acceptedCount);
+        }
+        checkGameOver();
+    }
+}
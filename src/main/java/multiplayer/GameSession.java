@@ -0,0 +1,46 @@
+package multiplayer;
+
+import p2p.GameJournal;
+import p2p.OpCodes;
+import sudoku.Sudoku;
+
+/**
+ * The state of a game between two players, the first player moves first and then they take turns.
+ * The session starts once the players are matched, and ends once the sudoku is solved or either player is gone.
+ * The session holds the authoritative board, an invalid move is rejected and the player moves again.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+class GameSession extends Session {
+    private int turn;
+    private long turnStartNanos = System.nanoTime();
+
+    GameSession(Connection first, Connection second, Sudoku sudoku, SpectatorPolicy policy, GameJournal journal) {
+        super(first, second, sudoku, policy, journal);
+        first.writeOpCode(OpCodes.FIRST_MOVE);
+    }
+
+    @Override
+    void onFillInNumber(Connection player, byte row, byte col, byte num) {
+        if (players[turn] != player) {
+            throw new IllegalStateException("Not the player's turn.");
+        }
+        if (!sudoku.isValidPut(row, col, num)) {
+            MOVES_REJECTED.increment();
+            player.writeMoveRejected(row, col, num);
+            return;
+        }
+        apply(row, col, num);
+        turn = 1 - turn;
+        long now = System.nanoTime();
+        TURN_NANOS.record(now - turnStartNanos);
+        turnStartNanos = now;
+        players[turn].writeFillInNumber(row, col, num);
+        broadcast.fillInNumber(row, col, num);
+        checkGameOver();
+    }
+
+    @Override
+    void onFillInNumbers(Connection player, int seq, byte[] moves, int count) {
+        throw new IllegalStateException("The moves should be sent in turns.");
+    }
+}
@@ -0,0 +1,105 @@
+package multiplayer;
+
+import sudoku.Difficulty;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pairs the waiting players of the same difficulty in the joining order. Every difficulty has its own queue
+ * guarded by its own lock (stripe), so joining different difficulties never contends.
+ * The listener is notified outside the lock, on the thread enqueuing the second player.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class Matchmaker<P> {
+    private final MatchListener<P> listener;
+    private final List<ArrayDeque<Entry<P>>> queues = new ArrayList<>();  // by the difficulty's ordinal
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public interface MatchListener<P> {
+        void onMatched(P first, P second, Difficulty difficulty);
+    }
+
+    public Matchmaker(MatchListener<P> listener) {
+        this.listener = listener;
+        for (int i = 0; i < Difficulty.values().length; i++) {
+            queues.add(new ArrayDeque<>());
+        }
+    }
+
+    public void enqueue(P player, Difficulty difficulty) {
+        ArrayDeque<Entry<P>> queue = queues.get(difficulty.ordinal());
+        Entry<P> opponent;
+        synchronized (queue) {
+            opponent = queue.poll();
+            if (opponent == null) {
+                queue.offer(new Entry<>(player, System.nanoTime()));
+                return;
+            }
+        }
+        recordLatency(System.nanoTime() - opponent.enqueuedAt);
+        listener.onMatched(opponent.player, player, difficulty);
+    }
+
+    /**
+     * @return true if the player was waiting and has been removed
+     */
+    public boolean cancel(P player, Difficulty difficulty) {
+        ArrayDeque<Entry<P>> queue = queues.get(difficulty.ordinal());
+        synchronized (queue) {
+            Iterator<Entry<P>> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().player == player) {
+                    iterator.remove();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void recordLatency(long latencyNanos) {
+        matches.increment();
+        totalLatencyNanos.add(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    public int getQueueDepth(Difficulty difficulty) {
+        ArrayDeque<Entry<P>> queue = queues.get(difficulty.ordinal());
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public long getMatches() {
+        return matches.sum();
+    }
+
+    /**
+     * @return the average time the first player of a match has waited
+     */
+    public long getAverageLatencyNanos() {
+        long matches = this.matches.sum();
+        return matches == 0 ? 0 : totalLatencyNanos.sum() / matches;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    private static class Entry<P> {
+        private final P player;
+        private final long enqueuedAt;
+
+        Entry(P player, long enqueuedAt) {
+            this.player = player;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
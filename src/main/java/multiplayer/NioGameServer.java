@@ -0,0 +1,181 @@
+package multiplayer;
+
+import metrics.Metrics;
+import p2p.GameJournal;
+import sudoku.PuzzlePool;
+import sudoku.Sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hosts many games on a single selector thread. The players submitting their names are paired by the
+ * {@link Matchmaker}, every pair plays in its own {@link GameSession} and speaks the same protocol as {@link p2p.P2PClient}.
+ * The players joining the co-op lobby are paired by another matchmaker, and every pair plays in a {@link CoopSession}.
+ * The spectators watch a game by a player's name, see {@link Broadcast}.
+ * With a {@link GameJournal}, the events of every session handled in a round of the event loop are committed
+ * together with a single fsync, and only then are the responses written to the channels.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class NioGameServer implements Runnable, Closeable {
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Matchmaker<Connection> matchmaker;
+    private final Matchmaker<Connection> coopMatchmaker;
+    private final Map<String, Session> sessionsByPlayer = new HashMap<>();  // only accessed by the selector thread
+    private final List<SelectionKey> writableKeys = new ArrayList<>();
+    private final GameJournal journal;
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        Metrics.registerMBean();
+        Metrics.dumpOnShutdown(System.err);
+        GameJournal journal = args.length > 1 ? new GameJournal(Path.of(args[1]), true) : null;
+        new NioGameServer(port, new PuzzlePool(64, 256, 2), SpectatorPolicy.COALESCE, journal).run();
+    }
+
+    public NioGameServer(int port, PuzzlePool puzzlePool) throws IOException {
+        this(port, puzzlePool, SpectatorPolicy.COALESCE, null);
+    }
+
+    /**
+     * @param journal null if the games are not journaled, the games recovered from it are ended as their players
+     *                are gone, since the hosted games can not be resumed
+     */
+    public NioGameServer(int port, PuzzlePool puzzlePool, SpectatorPolicy spectatorPolicy, GameJournal journal) throws IOException {
+        this.journal = journal;
+        if (journal != null) {
+            for (GameJournal.Game game : journal.getUnfinishedGames()) {
+                journal.gameOver(game.getId());
+            }
+            journal.commit();
+        }
+        matchmaker = new Matchmaker<>((first, second, difficulty) ->
+                register(new GameSession(first, second, puzzlePool.take(difficulty), spectatorPolicy, journal)));
+        coopMatchmaker = new Matchmaker<>((first, second, difficulty) ->
+                register(new CoopSession(first, second, puzzlePool.take(difficulty), spectatorPolicy, journal)));
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    private void register(Session session) {
+        for (Connection player : session.players) {
+            sessionsByPlayer.put(player.getName(), session);  // removed once the player's connection is closed
+        }
+    }
+
+    public Matchmaker<?> getMatchmaker() {
+        return matchmaker;
+    }
+
+    public Matchmaker<?> getCoopMatchmaker() {
+        return coopMatchmaker;
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;  // closed by handling another key, e.g. the opponent's
+                    }
+                    if (key.isAcceptable()) {
+                        acceptClient();
+                    } else {
+                        handleReadable(key);
+                    }
+                }
+                if (journal != null) {
+                    journal.commit();  // the group commit of this round's events, before any response is written
+                }
+                for (SelectionKey key : writableKeys) {
+                    handleWritable(key);
+                }
+                writableKeys.clear();
+            }
+        } catch (IOException err) {
+            if (running) {
+                throw new IllegalStateException(err);
+            }  // else stopped by close(), e.g. the journal closed by the owner during the shutdown
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    private void acceptClient() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key, matchmaker, coopMatchmaker, sessionsByPlayer));
+    }
+
+    private void handleReadable(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                writableKeys.add(key);
+            }
+        } catch (IOException | IllegalStateException | Sudoku.SudokuException err) {
+            connection.close();  // the game is lost if either player is gone or breaks the protocol
+        }
+    }
+
+    private void handleWritable(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            connection.onWritable();
+        } catch (IOException err) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void closeQuietly() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package multiplayer;
+
+import metrics.Histogram;
+import metrics.Metrics;
+import p2p.GameJournal;
+import p2p.OpCodes;
+import sudoku.SolutionCache;
+import sudoku.Sudoku;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A game the matched players are playing in, either taking turns ({@link GameSession}) or at the same time
+ * ({@link CoopSession}). The session holds the authoritative board, and its events are fanned out to the spectators.
+ * If the server has a journal, the events are appended to it and committed by the server's event loop before
+ * the responses are written.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+abstract class Session {
+    protected final static LongAdder MOVES_ACCEPTED = Metrics.counter("moves.accepted");
+    protected final static LongAdder MOVES_REJECTED = Metrics.counter("moves.rejected");
+    protected final static Histogram TURN_NANOS = Metrics.histogram("game.turn.nanos");
+    private final static LongAdder ACTIVE_SESSIONS = Metrics.gauge("sessions.active");
+    private final static LongAdder HINTS = Metrics.counter("hints");
+    protected final Connection[] players;
+    protected final Sudoku sudoku;
+    protected final Broadcast broadcast;
+    private final byte[] forcedMove = new byte[3];
+    private final byte[] startBoard = new byte[81];
+    private final byte[] completions = new byte[81 * 3];  // the [row, col, units] of the moves completing units
+    private int completionCount;
+    private byte[] solution;  // of the start board, found on the first hint which has no forced move
+    private final GameJournal journal;
+    private final int gameId;
+    protected boolean over;
+
+    /**
+     * @param journal null if the games are not journaled
+     */
+    Session(Connection first, Connection second, Sudoku sudoku, SpectatorPolicy policy, GameJournal journal) {
+        this.players = new Connection[]{first, second};
+        this.sudoku = sudoku;
+        this.broadcast = new Broadcast(sudoku, policy);
+        this.journal = journal;
+        sudoku.snapshot(startBoard);
+        ACTIVE_SESSIONS.increment();
+        try {
+            this.gameId = journal == null ? -1 : journal.gameStarted(sudoku, first.getName(), second.getName());
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+        first.setSession(this);
+        second.setSession(this);
+
+        first.writeSubmitName(second.getName());
+        second.writeSubmitName(first.getName());
+        first.writeGameStarted(sudoku);
+        second.writeGameStarted(sudoku);
+    }
+
+    /**
+     * @throws IllegalStateException if the move breaks the session's protocol
+     */
+    abstract void onFillInNumber(Connection player, byte row, byte col, byte num);
+
+    /**
+     * @param moves the triples of [row, col, number]
+     * @throws IllegalStateException if the moves break the session's protocol
+     */
+    abstract void onFillInNumbers(Connection player, int seq, byte[] moves, int count);
+
+    /**
+     * Answer the hint from the authoritative board without changing it, at any time of the game.
+     * @throws IllegalStateException if the cell is out of the board
+     */
+    void onHintRequest(Connection player, byte row, byte col) {
+        if (row < 0 || row > 8 || col < 0 || col > 8) {
+            throw new IllegalStateException("The cell is out of the board.");
+        }
+        HINTS.increment();
+        boolean forced = sudoku.findForcedMove(forcedMove) || findAnswer(row, col);
+        player.writeHint(row, col, sudoku.getCandidates(row, col), forced ? forcedMove : null);
+    }
+
+    /**
+     * Take the requested cell's answer as the move from the start board's solution, when no move is forced by the rules,
+     * the solution comes from the {@link SolutionCache} so a puzzle hinted in many games is solved once.
+     * @return false if the cell is not empty, or the board has no solution
+     */
+    private boolean findAnswer(byte row, byte col) {
+        if (!sudoku.isEmpty(row, col)) {
+            return false;
+        }
+        if (solution == null) {
+            Sudoku start = new Sudoku();
+            start.restore(startBoard);
+            byte[] solution = new byte[81];
+            if (!SolutionCache.getDefault().getSolution(start, solution)) {
+                return false;
+            }
+            this.solution = solution;
+        }
+        forcedMove[0] = row;
+        forcedMove[1] = col;
+        forcedMove[2] = solution[row * 9 + col];
+        return true;
+    }
+
+    /**
+     * Put the accepted move on the board and append it to the journal.
+     * @throws UncheckedIOException if the journal fails, which stops the server rather than losing the moves silently
+     */
+    protected void apply(byte row, byte col, byte num) {
+        sudoku.put(row, col, num);
+        MOVES_ACCEPTED.increment();
+        int units = sudoku.getCompletedUnits(row, col);
+        if (units != 0) {
+            completions[completionCount * 3] = row;
+            completions[completionCount * 3 + 1] = col;
+            completions[completionCount * 3 + 2] = (byte) units;
+            completionCount++;
+        }
+        if (journal != null) {
+            try {
+                journal.move(gameId, row, col, num);
+            } catch (IOException err) {
+                throw new UncheckedIOException(err);
+            }
+        }
+    }
+
+    private void end() {
+        over = true;
+        ACTIVE_SESSIONS.decrement();
+        if (journal != null) {
+            try {
+                journal.gameOver(gameId);
+            } catch (IOException err) {
+                throw new UncheckedIOException(err);
+            }
+        }
+    }
+
+    /**
+     * Tell the players the units completed by the moves applied since the last check, and end the game if the sudoku
+     * is solved, which is known in O(1) from the completed units.
+     */
+    protected void checkGameOver() {
+        for (int i = 0; i < completionCount; i++) {
+            for (Connection p : players) {
+                p.writeUnitsCompleted(completions[i * 3], completions[i * 3 + 1], completions[i * 3 + 2]);
+            }
+        }
+        completionCount = 0;
+        if (sudoku.isSolved()) {
+            end();
+            for (Connection p : players) {
+                p.writeOpCode(OpCodes.GAME_OVER);
+                p.closeAfterFlush();
+            }
+            broadcast.gameOver();
+        }
+    }
+
+    void onDisconnected(Connection player) {
+        if (over) {
+            return;  // let the others flush the game over
+        }
+        end();
+        for (Connection p : players) {
+            if (p != player) {
+                p.close();
+            }
+        }
+        broadcast.close();
+    }
+
+    /**
+     * Start sending the game's events to the spectator, or GAME_OVER if the game is over.
+     */
+    void spectate(Connection spectator) {
+        if (over) {
+            spectator.writeOpCode(OpCodes.GAME_OVER);
+            spectator.closeAfterFlush();
+        } else {
+            broadcast.add(spectator, players[0].getName(), players[1].getName());
+        }
+    }
+
+    Broadcast getBroadcast() {
+        return broadcast;
+    }
+}
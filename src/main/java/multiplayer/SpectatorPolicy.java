@@ -0,0 +1,17 @@
+package multiplayer;
+
+/**
+ * What to do with a spectator whose unsent frames exceed the backlog limit, so that a slow spectator never stalls the game.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public enum SpectatorPolicy {
+    /**
+     * Disconnect the spectator.
+     */
+    DROP,
+
+    /**
+     * Drop the unsent frames and send the current board in a GAME_STARTED instead.
+     */
+    COALESCE
+}
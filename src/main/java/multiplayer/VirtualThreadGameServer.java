@@ -0,0 +1,101 @@
+package multiplayer;
+
+import metrics.Metrics;
+import sudoku.Difficulty;
+import sudoku.PuzzlePool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many games with a virtual thread per game, an alternative to the {@link NioGameServer}
+ * keeping the game logic in the blocking style. Every connection joins the lobby on its own virtual thread,
+ * and the game is then played on the thread of the player completing the match.
+ * A waiting player is not read until matched, so the one gone while waiting is found once matched,
+ * and then the other player is put back to the lobby.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class VirtualThreadGameServer implements Runnable, Closeable {
+    private final ServerSocket server;
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger activeGames = new AtomicInteger();
+    private final PuzzlePool puzzlePool;
+    private final Matchmaker<BlockingGameSession.Player> matchmaker;
+
+    public static void main(String[] args) throws IOException {
+        Metrics.registerMBean();
+        Metrics.dumpOnShutdown(System.err);
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        new VirtualThreadGameServer(port, new PuzzlePool(64, 256, 2)).run();
+    }
+
+    public VirtualThreadGameServer(int port, PuzzlePool puzzlePool) throws IOException {
+        this.server = new ServerSocket(port, 1024);
+        this.puzzlePool = puzzlePool;
+        this.matchmaker = new Matchmaker<>(this::play);
+    }
+
+    private void play(BlockingGameSession.Player first, BlockingGameSession.Player second, Difficulty difficulty) {
+        if (!first.isConnected()) {
+            first.close();
+            matchmaker.enqueue(second, difficulty);  // wait for the next opponent instead
+            return;
+        }
+        activeGames.incrementAndGet();
+        try {
+            new BlockingGameSession(first, second, puzzlePool.take(difficulty)).run();
+        } finally {
+            activeGames.decrementAndGet();
+        }
+    }
+
+    public Matchmaker<?> getMatchmaker() {
+        return matchmaker;
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public int getActiveGames() {
+        return activeGames.get();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!server.isClosed()) {
+                Socket socket = server.accept();
+                threads.execute(() -> joinLobby(socket));
+            }
+        } catch (IOException err) {
+            if (!server.isClosed()) {
+                throw new IllegalStateException(err);
+            }
+        }
+    }
+
+    private void joinLobby(Socket socket) {
+        try {
+            BlockingGameSession.Player player = new BlockingGameSession.Player(socket);
+            player.readJoinLobby();
+            matchmaker.enqueue(player, player.getDifficulty());
+        } catch (IOException | IllegalStateException err) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        threads.shutdownNow();
+    }
+}
@@ -0,0 +1,150 @@
+package p2p;
+
+import metrics.Metrics;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The single queue of a console client's events: the lines typed on the console, read by a daemon thread, and the
+ * frames of the socket, read by a daemon thread per connection. The client's thread takes the events in the order
+ * of arrival and never blocks on either of them, so that an opponent's move is shown while the player is typing.
+ * A frame is queued as a copy of its [2 length][length bytes], to be decoded by {@link FrameDecoder#nextFrame(ByteBuffer)}.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class EventQueue {
+    private final static LongAdder BYTES_IN = Metrics.counter("net.bytes_in");
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+
+    public static class Event {
+        public final static int LINE = 0, FRAME = 1, DISCONNECTED = 2, CONSOLE_CLOSED = 3;
+        private final int type;
+        private final Socket source;
+        private final String line;
+        private final ByteBuffer frame;
+        private final IOException error;
+
+        private Event(int type, Socket source, String line, ByteBuffer frame, IOException error) {
+            this.type = type;
+            this.source = source;
+            this.line = line;
+            this.frame = frame;
+            this.error = error;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        /**
+         * @return the socket of the frame or the disconnection, so that the events of a dropped connection are told
+         * from the reconnected one's, or null for the console's events
+         */
+        public Socket getSource() {
+            return source;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        /**
+         * @return the frame in the reading mode, see {@link FrameDecoder#nextFrame(ByteBuffer)}
+         */
+        public ByteBuffer getFrame() {
+            return frame;
+        }
+
+        /**
+         * @return the reason of the disconnection
+         */
+        public IOException getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Start reading the console's lines until it ends, which is queued as {@link Event#CONSOLE_CLOSED}.
+     */
+    public void startConsoleReader(InputStream console) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(console));
+        startDaemon("console-reader", () -> {
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    events.add(new Event(Event.LINE, null, line.trim(), null, null));
+                }
+            } catch (IOException ignored) {
+            }
+            events.add(new Event(Event.CONSOLE_CLOSED, null, null, null, null));
+        });
+    }
+
+    /**
+     * Start reading the socket's frames until it's closed, which is queued as {@link Event#DISCONNECTED}.
+     */
+    public void startSocketReader(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        startDaemon("socket-reader", () -> {
+            try {
+                while (true) {
+                    int length = in.readUnsignedShort();
+                    if (length < 1 || length > FrameDecoder.MAX_FRAME_LENGTH) {
+                        throw new IOException("Frame length incorrect, given " + length);
+                    }
+                    byte[] frame = new byte[2 + length];
+                    frame[0] = (byte) (length >>> 8);
+                    frame[1] = (byte) length;
+                    in.readFully(frame, 2, length);
+                    BYTES_IN.add(frame.length);
+                    events.add(new Event(Event.FRAME, socket, null, ByteBuffer.wrap(frame), null));
+                }
+            } catch (IOException err) {
+                events.add(new Event(Event.DISCONNECTED, socket, null, null, err));
+            }
+        });
+    }
+
+    private static void startDaemon(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);  // blocked in the reads, which don't keep the client alive
+        thread.start();
+    }
+
+    /**
+     * Block until the next event.
+     */
+    public Event take() throws InterruptedIOException {
+        try {
+            return events.take();
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Block until the next line typed on the console, the socket's events before it are dropped,
+     * e.g. for the name asked before connecting.
+     * @return null if the console is closed
+     */
+    public String takeLine() throws InterruptedIOException {
+        while (true) {
+            Event event = take();
+            if (event.type == Event.LINE && !event.line.isEmpty()) {
+                return event.line;
+            } else if (event.type == Event.CONSOLE_CLOSED) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package p2p;
+
+import metrics.Metrics;
+import sudoku.Difficulty;
+import sudoku.Sudoku;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decode the frames encoded by the {@link FrameEncoder}, either read from a blocking stream into the decoder's
+ * own buffer, or found in a non-blocking connection's read buffer. The fields of the current frame are then read
+ * in order, and reading over the frame's end is a protocol error.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class FrameDecoder {
+    public final static int MAX_FRAME_LENGTH = 1024;
+    public final static int MAX_BATCH_MOVES = 64;
+    private final static LongAdder BYTES_IN = Metrics.counter("net.bytes_in");
+    private final ByteBuffer buffer = ByteBuffer.allocate(MAX_FRAME_LENGTH);
+    private final byte[] board = new byte[81 + Sudoku.GIVENS_SIZE];  // the scratch of the board read
+    private ByteBuffer source;
+    private int frameEnd;
+    private byte opCode;
+
+    /**
+     * Block until a whole frame is read.
+     * @return the frame's op code
+     * @throws java.io.EOFException if the stream ends
+     */
+    public byte readFrame(DataInputStream in) throws IOException {
+        int length = in.readUnsignedShort();
+        checkLength(length);
+        in.readFully(buffer.array(), 0, length);
+        BYTES_IN.add(2 + length);
+        buffer.clear().limit(length);
+        source = buffer;
+        frameEnd = length;
+        opCode = buffer.get();
+        return opCode;
+    }
+
+    /**
+     * Find the next frame in the buffer, which is left unchanged if the frame is incomplete.
+     * The buffer's position is moved to the frame's end by {@link #endFrame()}.
+     * @param in the buffer in the reading mode
+     * @return true if a whole frame is found
+     */
+    public boolean nextFrame(ByteBuffer in) {
+        if (in.remaining() < 2) {
+            return false;
+        }
+        int length = in.getShort(in.position()) & 0xFFFF;
+        checkLength(length);
+        if (in.remaining() < 2 + length) {
+            return false;
+        }
+        source = in;
+        frameEnd = in.position() + 2 + length;
+        in.position(in.position() + 2);
+        opCode = in.get();
+        return true;
+    }
+
+    private static void checkLength(int length) {
+        if (length < 1 || length > MAX_FRAME_LENGTH) {
+            throw new IllegalStateException("Frame length incorrect, given " + length);
+        }
+    }
+
+    /**
+     * Skip the rest of the current frame.
+     */
+    public void endFrame() {
+        source.position(frameEnd);
+    }
+
+    public byte getOpCode() {
+        return opCode;
+    }
+
+    public byte readByte() {
+        require(1);
+        return source.get();
+    }
+
+    public int readUnsignedShort() {
+        require(2);
+        return source.getShort() & 0xFFFF;
+    }
+
+    public long readLong() {
+        require(8);
+        return source.getLong();
+    }
+
+    /**
+     * Read the [1 n][n * ([1 row][1 col][1 number])] of FILL_IN_NUMBERS into the triples.
+     * @param moves at least {@link #MAX_BATCH_MOVES} * 3 bytes
+     * @return the number of the moves
+     */
+    public int readMoves(byte[] moves) {
+        int count = readByte() & 0xFF;
+        if (count > MAX_BATCH_MOVES) {
+            throw new IllegalStateException("Too many moves in a frame, given " + count);
+        }
+        require(count * 3);
+        source.get(moves, 0, count * 3);
+        return count;
+    }
+
+    public String readName() {
+        int length = readByte() & 0xFF;
+        require(length);
+        String name = new String(source.array(), source.arrayOffset() + source.position(), length, StandardCharsets.UTF_8);
+        source.position(source.position() + length);
+        return name;
+    }
+
+    public Difficulty readDifficulty() {
+        int ordinal = readByte();
+        if (ordinal < 0 || ordinal >= Difficulty.values().length) {
+            throw new IllegalStateException("Difficulty incorrect, given " + ordinal);
+        }
+        return Difficulty.values()[ordinal];
+    }
+
+    /**
+     * Replace the sudoku's board by the 81 cells and then the given cells' mask, e.g. a spectator's later snapshot
+     * replaces the board decoded before.
+     * @throws Sudoku.SudokuException if the board is invalid or a given cell is empty
+     */
+    public void readBoard(Sudoku sudoku) {
+        require(81 + Sudoku.GIVENS_SIZE);
+        source.get(board);
+        sudoku.restore(board);
+        sudoku.unpackGivens(board, 81);
+    }
+
+    private void require(int bytes) {
+        if (frameEnd - source.position() < bytes) {
+            throw new IllegalStateException("Frame too short for the message " + opCode);
+        }
+    }
+}
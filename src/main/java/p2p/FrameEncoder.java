@@ -0,0 +1,176 @@
+package p2p;
+
+import metrics.Metrics;
+import sudoku.Difficulty;
+import sudoku.Sudoku;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Encode the messages of {@link OpCodes} as frames into a reusable buffer, every frame is [2 n:= length][n message].
+ * The frames are appended to the buffer until written out, so several messages are sent in a single write.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class FrameEncoder {
+    private final static LongAdder BYTES_OUT = Metrics.counter("net.bytes_out");
+    private final ByteBuffer buffer;
+    private int frameStart;
+
+    public FrameEncoder() {
+        this(FrameDecoder.MAX_FRAME_LENGTH);
+    }
+
+    public FrameEncoder(int capacity) {
+        this.buffer = ByteBuffer.allocate(capacity);
+    }
+
+    public FrameEncoder submitName(String name) {
+        begin(OpCodes.SUBMIT_NAME);
+        putName(name);
+        return end();
+    }
+
+    public FrameEncoder joinLobby(Difficulty difficulty, String name) {
+        begin(OpCodes.JOIN_LOBBY);
+        buffer.put((byte) difficulty.ordinal());
+        putName(name);
+        return end();
+    }
+
+    public FrameEncoder spectate(String playerName) {
+        begin(OpCodes.SPECTATE);
+        putName(playerName);
+        return end();
+    }
+
+    public FrameEncoder gameStarted(Sudoku sudoku) {
+        begin(OpCodes.GAME_STARTED);
+        for (int row = 0; row < 9; row++) {
+            for (int col = 0; col < 9; col++) {
+                buffer.put(sudoku.get(row, col));
+            }
+        }
+        sudoku.packGivens(buffer.array(), buffer.arrayOffset() + buffer.position());
+        buffer.position(buffer.position() + Sudoku.GIVENS_SIZE);
+        return end();
+    }
+
+    /**
+     * @param snapshot the board and the given cells' mask in the layout of GAME_STARTED, see {@link MoveLog}
+     */
+    public FrameEncoder gameStarted(byte[] snapshot) {
+        begin(OpCodes.GAME_STARTED);
+        buffer.put(snapshot, 0, MoveLog.SNAPSHOT_SIZE);
+        return end();
+    }
+
+    public FrameEncoder fillInNumber(int row, int col, int num) {
+        begin(OpCodes.FILL_IN_NUMBER);
+        buffer.put((byte) row).put((byte) col).put((byte) num);
+        return end();
+    }
+
+    /**
+     * @param moves the moves in the triples of [row, col, number], the first one is at the index from * 3
+     */
+    public FrameEncoder fillInNumbers(int seq, byte[] moves, int from, int count) {
+        if (count > FrameDecoder.MAX_BATCH_MOVES) {
+            throw new IllegalArgumentException("At most " + FrameDecoder.MAX_BATCH_MOVES + " moves in a frame.");
+        }
+        begin(OpCodes.FILL_IN_NUMBERS);
+        buffer.putShort((short) seq).put((byte) count).put(moves, from * 3, count * 3);
+        return end();
+    }
+
+    public FrameEncoder movesAcked(int seq, int count, long accepted) {
+        begin(OpCodes.MOVES_ACKED);
+        buffer.putShort((short) seq).put((byte) count).putLong(accepted);
+        return end();
+    }
+
+    public FrameEncoder joinCoop(Difficulty difficulty, String name) {
+        begin(OpCodes.JOIN_COOP);
+        buffer.put((byte) difficulty.ordinal());
+        putName(name);
+        return end();
+    }
+
+    public FrameEncoder moveRejected(int row, int col, int num) {
+        begin(OpCodes.MOVE_REJECTED);
+        buffer.put((byte) row).put((byte) col).put((byte) num);
+        return end();
+    }
+
+    public FrameEncoder unitsCompleted(int row, int col, int units) {
+        begin(OpCodes.UNITS_COMPLETED);
+        buffer.put((byte) row).put((byte) col).put((byte) units);
+        return end();
+    }
+
+    public FrameEncoder hintRequest(int row, int col) {
+        begin(OpCodes.HINT_REQUEST);
+        buffer.put((byte) row).put((byte) col);
+        return end();
+    }
+
+    /**
+     * @param forcedMove the [row, col, number] of the forced move, or null if no move is forced
+     */
+    public FrameEncoder hint(int row, int col, int candidates, byte[] forcedMove) {
+        begin(OpCodes.HINT);
+        buffer.put((byte) row).put((byte) col).putShort((short) candidates);
+        if (forcedMove == null) {
+            buffer.put((byte) -1).put((byte) -1).put((byte) -1);
+        } else {
+            buffer.put(forcedMove, 0, 3);
+        }
+        return end();
+    }
+
+    /**
+     * Encode the message consisting of only the op code, e.g. GAME_OVER.
+     */
+    public FrameEncoder opCode(byte opCode) {
+        begin(opCode);
+        return end();
+    }
+
+    private void putName(String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 255) {
+            throw new IllegalArgumentException("The name should be at most 255 bytes.");
+        }
+        buffer.put((byte) nameBytes.length).put(nameBytes);
+    }
+
+    private void begin(byte opCode) {
+        frameStart = buffer.position();
+        buffer.putShort((short) 0).put(opCode);
+    }
+
+    private FrameEncoder end() {
+        buffer.putShort(frameStart, (short) (buffer.position() - frameStart - 2));
+        return this;
+    }
+
+    /**
+     * Write all the encoded frames to the stream in a single write.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        out.flush();
+        BYTES_OUT.add(buffer.position());
+        buffer.clear();
+    }
+
+    /**
+     * @return the buffer in the writing mode, holding the encoded frames from the position 0, for the channels to flip and drain
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+}
@@ -0,0 +1,299 @@
+package p2p;
+
+import sudoku.Sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The write-ahead journal of the games' events: the start board with the players' names, the accepted moves,
+ * and the game over. The events are appended to a buffer, and {@link #commit()} writes every event appended since
+ * the last commit through the file channel with a single fsync, so the moves of all the sessions handled in a
+ * round of the event loop share one fsync instead of paying one each (group commit).
+ * The responses to the moves should be sent only after the commit, so that an acknowledged move is never lost.
+ *
+ * Every record is [2 n:= length][n ([1 type][4 game id][payload])][4 CRC32 of the length and the n bytes].
+ * Once opened, the journal is replayed into the {@link Game}s not over yet, a torn record at the end left by
+ * a crash is discarded, and the file is compacted to only those games, renamed over the journal and then forced
+ * with its directory.
+ * The journal is not thread-safe, it is meant to be owned by the server's event loop.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class GameJournal implements Closeable {
+    private final static byte GAME_STARTED = 1;
+    private final static byte MOVE = 2;
+    private final static byte GAME_OVER = 3;
+    private final static int MAX_RECORD_SIZE = 2 + 1 + 4 + MoveLog.SNAPSHOT_SIZE + 2 * 256 + 4;
+    private final FileChannel channel;
+    private final boolean durable;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private final CRC32 crc = new CRC32();
+    private final byte[] snapshot = new byte[MoveLog.SNAPSHOT_SIZE];
+    private final List<Game> unfinishedGames;
+    private int nextGameId;
+    private boolean unsynced;  // written through the channel but not forced yet
+
+    /**
+     * A game replayed from the journal, which was not over when the journal was closed.
+     */
+    public static class Game {
+        private final int id;
+        private final String firstName;
+        private final String secondName;
+        private final byte[] startBoard;  // in the layout of GAME_STARTED
+        private byte[] moves = new byte[81 * 3];
+        private int moveCount;
+
+        private Game(int id, byte[] startBoard, String firstName, String secondName) {
+            this.id = id;
+            this.startBoard = startBoard;
+            this.firstName = firstName;
+            this.secondName = secondName;
+        }
+
+        private void addMove(byte row, byte col, byte num) {
+            if (moveCount * 3 == moves.length) {
+                moves = Arrays.copyOf(moves, moves.length * 2);
+            }
+            moves[moveCount * 3] = row;
+            moves[moveCount * 3 + 1] = col;
+            moves[moveCount * 3 + 2] = num;
+            moveCount++;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getFirstName() {
+            return firstName;
+        }
+
+        public String getSecondName() {
+            return secondName;
+        }
+
+        /**
+         * @return a new sudoku of the board when the game started, with the puzzle's given cells
+         */
+        public Sudoku getStartBoard() {
+            Sudoku sudoku = new Sudoku();
+            sudoku.restore(startBoard);
+            sudoku.unpackGivens(startBoard, 81);
+            return sudoku;
+        }
+
+        /**
+         * @return the moves in the triples of [row, col, number] in the order accepted, the array should not be modified
+         */
+        public byte[] getMoves() {
+            return moves;
+        }
+
+        public int getMoveCount() {
+            return moveCount;
+        }
+    }
+
+    /**
+     * Open the journal, or create it if not exists, and recover the games not over yet.
+     * @param durable whether the commits are forced to the storage device, the commits only reach the OS's page cache if not
+     */
+    public GameJournal(Path path, boolean durable) throws IOException {
+        this.durable = durable;
+        this.unfinishedGames = replay(path);
+        Path compacted = path.resolveSibling(path.getFileName() + ".compacting");
+        this.channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            for (Game game : unfinishedGames) {
+                appendGameStarted(game.id, game.startBoard, game.firstName, game.secondName);
+                for (int i = 0; i < game.moveCount; i++) {
+                    appendMove(game.id, game.moves[i * 3], game.moves[i * 3 + 1], game.moves[i * 3 + 2]);
+                }
+            }
+            write();
+            channel.force(true);
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(path);
+        } catch (IOException err) {
+            channel.close();
+            throw err;
+        }
+    }
+
+    /**
+     * Force the directory of the journal, so that the rename of the compacted journal is durable, otherwise the old
+     * journal may come back after a crash. A directory can't be opened on some platforms (e.g. Windows), where the
+     * rename is left to the OS.
+     */
+    private static void forceDirectory(Path path) throws IOException {
+        FileChannel directory;
+        try {
+            directory = FileChannel.open(path.toAbsolutePath().getParent(), StandardOpenOption.READ);
+        } catch (IOException notSupported) {
+            return;
+        }
+        try (directory) {
+            directory.force(true);
+        }
+    }
+
+    private List<Game> replay(Path path) throws IOException {
+        Map<Integer, Game> games = new LinkedHashMap<>();
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        while (in.remaining() >= 2) {
+            int start = in.position();
+            int length = in.getShort(start) & 0xFFFF;
+            if (length < 5 || in.remaining() < 2 + length + 4) {
+                break;  // torn by a crash
+            }
+            crc.reset();
+            crc.update(in.array(), start, 2 + length);
+            if ((int) crc.getValue() != in.getInt(start + 2 + length)) {
+                break;
+            }
+            in.position(start + 2);
+            byte type = in.get();
+            int id = in.getInt();
+            nextGameId = Math.max(nextGameId, id + 1);
+            switch (type) {
+                case GAME_STARTED:
+                    byte[] board = new byte[MoveLog.SNAPSHOT_SIZE];
+                    in.get(board);
+                    games.put(id, new Game(id, board, readName(in), readName(in)));
+                    break;
+                case MOVE:
+                    Game game = games.get(id);
+                    if (game != null) {
+                        game.addMove(in.get(), in.get(), in.get());
+                    }
+                    break;
+                case GAME_OVER:
+                    games.remove(id);
+                    break;
+                default:
+                    throw new IOException("The journal is corrupted, record type " + type);
+            }
+            in.position(start + 2 + length + 4);
+        }
+        return new ArrayList<>(games.values());
+    }
+
+    private static String readName(ByteBuffer in) {
+        byte[] name = new byte[in.get() & 0xFF];
+        in.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the games not over yet when the journal was opened
+     */
+    public Collection<Game> getUnfinishedGames() {
+        return unfinishedGames;
+    }
+
+    /**
+     * @return the new game's id
+     */
+    public int gameStarted(Sudoku sudoku, String firstName, String secondName) throws IOException {
+        sudoku.snapshot(snapshot);
+        sudoku.packGivens(snapshot, 81);
+        int id = nextGameId++;
+        appendGameStarted(id, snapshot, firstName, secondName);
+        return id;
+    }
+
+    private void appendGameStarted(int id, byte[] board, String firstName, String secondName) throws IOException {
+        int start = begin(GAME_STARTED, id);
+        buffer.put(board, 0, MoveLog.SNAPSHOT_SIZE);
+        putName(firstName);
+        putName(secondName);
+        end(start);
+    }
+
+    public void move(int gameId, int row, int col, int num) throws IOException {
+        appendMove(gameId, row, col, num);
+    }
+
+    private void appendMove(int gameId, int row, int col, int num) throws IOException {
+        int start = begin(MOVE, gameId);
+        buffer.put((byte) row).put((byte) col).put((byte) num);
+        end(start);
+    }
+
+    public void gameOver(int gameId) throws IOException {
+        end(begin(GAME_OVER, gameId));
+    }
+
+    private void putName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        buffer.put((byte) bytes.length).put(bytes);
+    }
+
+    private int begin(byte type, int gameId) throws IOException {
+        if (buffer.remaining() < MAX_RECORD_SIZE) {
+            write();
+        }
+        int start = buffer.position();
+        buffer.putShort((short) 0).put(type).putInt(gameId);
+        return start;
+    }
+
+    private void end(int start) {
+        buffer.putShort(start, (short) (buffer.position() - start - 2));
+        crc.reset();
+        crc.update(buffer.slice(start, buffer.position() - start));
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        unsynced |= buffer.hasRemaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Write the events appended since the last commit, and then force them to the storage device if durable,
+     * with a single fsync however many events and sessions there are.
+     */
+    public void commit() throws IOException {
+        write();
+        if (durable && unsynced) {
+            channel.force(false);
+        }
+        unsynced = false;
+    }
+
+    /**
+     * Commit and close, the games not over yet are recovered once the journal is opened again.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package p2p;
+
+import sudoku.Sudoku;
+
+import java.util.Arrays;
+
+/**
+ * The append-only log of a game's accepted moves, with a snapshot of the board taken every {@link #SNAPSHOT_INTERVAL}
+ * moves in the layout of GAME_STARTED, i.e. [81 board][11 given cells' mask].
+ * A reconnecting player or a late spectator is sent the latest snapshot and then only the moves after it,
+ * so catching up costs at most a snapshot and {@link #SNAPSHOT_INTERVAL} moves however long the game has run.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class MoveLog {
+    public final static int SNAPSHOT_INTERVAL = 32;  // fewer than FrameDecoder.MAX_BATCH_MOVES, so the moves fit in a frame
+    public final static int SNAPSHOT_SIZE = 81 + Sudoku.GIVENS_SIZE;
+    private final Sudoku sudoku;
+    private final byte[] snapshot = new byte[SNAPSHOT_SIZE];
+    private byte[] moves = new byte[81 * 3];
+    private int size;
+    private int snapshotMoves;  // the number of the moves included in the snapshot
+
+    /**
+     * @param sudoku the game's board, which the moves are put on before appended
+     */
+    public MoveLog(Sudoku sudoku) {
+        this.sudoku = sudoku;
+        takeSnapshot();
+    }
+
+    /**
+     * Append the move which has been put on the board.
+     */
+    public void append(int row, int col, int num) {
+        if (size * 3 == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[size * 3] = (byte) row;
+        moves[size * 3 + 1] = (byte) col;
+        moves[size * 3 + 2] = (byte) num;
+        size++;
+        if (size - snapshotMoves >= SNAPSHOT_INTERVAL) {
+            takeSnapshot();
+        }
+    }
+
+    private void takeSnapshot() {
+        sudoku.snapshot(snapshot);
+        sudoku.packGivens(snapshot, 81);
+        snapshotMoves = size;
+    }
+
+    /**
+     * Encode the latest snapshot in GAME_STARTED, followed by the moves after it in a FILL_IN_NUMBERS numbered
+     * by their indexes in the log, which is omitted if there are none.
+     */
+    public FrameEncoder writeResume(FrameEncoder encoder) {
+        encoder.gameStarted(snapshot);
+        if (size > snapshotMoves) {
+            encoder.fillInNumbers(snapshotMoves, moves, snapshotMoves, size - snapshotMoves);
+        }
+        return encoder;
+    }
+
+    /**
+     * @return the number of the moves
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of the moves included in the latest snapshot
+     */
+    public int getSnapshotMoves() {
+        return snapshotMoves;
+    }
+}
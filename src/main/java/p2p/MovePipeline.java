@@ -0,0 +1,131 @@
+package p2p;
+
+import sudoku.Sudoku;
+
+/**
+ * A co-op player's pipelined moves: a move is applied to the local board at once, coalesced with the others into
+ * FILL_IN_NUMBERS frames of consecutive sequence numbers, and kept pending until the server's MOVES_ACKED,
+ * so that the player never waits for a round trip.
+ * The confirmed board replays the server's order, i.e. the acknowledged moves and the partner's moves as they arrive,
+ * and the local board is always the confirmed board plus the pending moves, it's rebuilt if a move is rejected.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class MovePipeline {
+    public final static int MAX_PENDING_MOVES = 256;
+    private final Sudoku confirmed = new Sudoku();
+    private final Sudoku local = new Sudoku();
+    private final byte[] pending = new byte[MAX_PENDING_MOVES * 3];  // the triples of [row, col, number] in order
+    private final byte[] partnerMoves = new byte[FrameDecoder.MAX_BATCH_MOVES * 3];
+    private int pendingCount;
+    private int sentCount;  // the pending moves sent but not acknowledged
+    private int firstPendingSeq;
+    private long rejectedMoves;
+
+    public MovePipeline(Sudoku sudoku) {
+        sudoku.copyTo(confirmed);
+        sudoku.copyTo(local);
+    }
+
+    /**
+     * @return the local board including the pending moves, to be rendered
+     */
+    public Sudoku getBoard() {
+        return local;
+    }
+
+    /**
+     * Apply the move to the local board and queue it until {@link #flush(FrameEncoder)}.
+     * @return false if the move is invalid on the local board or too many moves are pending
+     */
+    public boolean move(int row, int col, int num) {
+        if (pendingCount == MAX_PENDING_MOVES || !local.isValidPut(row, col, num)) {
+            return false;
+        }
+        local.put(row, col, num);
+        pending[pendingCount * 3] = (byte) row;
+        pending[pendingCount * 3 + 1] = (byte) col;
+        pending[pendingCount * 3 + 2] = (byte) num;
+        pendingCount++;
+        return true;
+    }
+
+    /**
+     * Encode the queued moves into as few FILL_IN_NUMBERS frames as possible.
+     */
+    public void flush(FrameEncoder encoder) {
+        while (sentCount < pendingCount) {
+            int count = Math.min(FrameDecoder.MAX_BATCH_MOVES, pendingCount - sentCount);
+            encoder.fillInNumbers((firstPendingSeq + sentCount) & 0xFFFF, pending, sentCount, count);
+            sentCount += count;
+        }
+    }
+
+    /**
+     * Handle the frame which has been read by the decoder, either MOVES_ACKED or the partner's FILL_IN_NUMBERS.
+     * @throws IllegalStateException if the acknowledgement is out of order
+     */
+    public void onFrame(FrameDecoder decoder) {
+        if (decoder.getOpCode() == OpCodes.MOVES_ACKED) {
+            onMovesAcked(decoder.readUnsignedShort(), decoder.readByte() & 0xFF, decoder.readLong());
+        } else if (decoder.getOpCode() == OpCodes.FILL_IN_NUMBERS) {
+            decoder.readUnsignedShort();  // the server's order is the frames' order
+            int count = decoder.readMoves(partnerMoves);
+            for (int i = 0; i < count; i++) {
+                confirmed.put(partnerMoves[i * 3], partnerMoves[i * 3 + 1], partnerMoves[i * 3 + 2]);
+            }
+            rebuild();
+        } else if (decoder.getOpCode() != OpCodes.UNITS_COMPLETED) {  // known from the confirmed board already
+            throw new IllegalStateException("OpCode incorrect, given " + decoder.getOpCode());
+        }
+    }
+
+    private void onMovesAcked(int seq, int count, long accepted) {
+        if (seq != firstPendingSeq || count > sentCount) {
+            throw new IllegalStateException("Acknowledgement out of order, given " + seq);
+        }
+        boolean rejected = false;
+        for (int i = 0; i < count; i++) {
+            if ((accepted >>> i & 1) != 0) {
+                confirmed.put(pending[i * 3], pending[i * 3 + 1], pending[i * 3 + 2]);
+            } else {
+                rejected = true;
+                rejectedMoves++;
+            }
+        }
+        System.arraycopy(pending, count * 3, pending, 0, (pendingCount - count) * 3);
+        pendingCount -= count;
+        sentCount -= count;
+        firstPendingSeq = (seq + count) & 0xFFFF;
+        if (rejected) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Replay the pending moves over the confirmed board, those no longer valid are left to the server to reject.
+     */
+    private void rebuild() {
+        confirmed.copyTo(local);
+        for (int i = 0; i < pendingCount; i++) {
+            byte row = pending[i * 3], col = pending[i * 3 + 1], num = pending[i * 3 + 2];
+            if (local.isValidPut(row, col, num)) {
+                local.put(row, col, num);
+            }
+        }
+    }
+
+    public int getPendingMoves() {
+        return pendingCount;
+    }
+
+    public long getRejectedMoves() {
+        return rejectedMoves;
+    }
+
+    /**
+     * @return true if the board confirmed by the server is solved, and then the server sends GAME_OVER
+     */
+    public boolean isSolved() {
+        return confirmed.isSolved();
+    }
+}
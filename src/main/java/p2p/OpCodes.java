@@ -1,6 +1,7 @@
 package p2p;
 
 /**
+ * Every message is sent as a frame [2 n:= Message's length][n Message], see {@link FrameEncoder} and {@link FrameDecoder}.
  * @author - johnny850807@gmail.com (Waterball)
  */
 public interface OpCodes {
@@ -10,7 +11,8 @@ public interface OpCodes {
     byte SUBMIT_NAME = -100;
 
     /**
-     * [1 OpCodes][81 sudoku.Sudoku's Board]
+     * [1 OpCodes][81 sudoku.Sudoku's Board][11 Given cells' mask]
+     * The mask is packed by {@link sudoku.Sudoku#packGivens(byte[], int)}, so that the clients can reject the moves on them.
      */
     byte GAME_STARTED = -101;
 
@@ -24,4 +26,80 @@ public interface OpCodes {
      */
     byte GAME_OVER = -103;
 
+    /**
+     * [1 OpCodes]
+     * Sent right after GAME_STARTED by a hosted game server to the player who moves first,
+     * as if the opponent passed the first turn.
+     * Also sent by {@link P2PServer} after resuming a reconnected client's game if it is the client's turn.
+     */
+    byte FIRST_MOVE = -104;
+
+    /**
+     * [1 OpCodes][1 Difficulty's ordinal][1 n:= Name's length][n Name]
+     * Submit the name to a hosted game server's lobby and wait for an opponent preferring the same difficulty,
+     * the opponent's SUBMIT_NAME is then sent back once matched.
+     * A plain SUBMIT_NAME joins the lobby with the MEDIUM difficulty.
+     */
+    byte JOIN_LOBBY = -105;
+
+    /**
+     * [1 OpCodes][1 row][1 col][1 number]
+     * Sent back to the player whose FILL_IN_NUMBER is invalid, the move is not applied nor forwarded,
+     * and it is still the player's turn.
+     */
+    byte MOVE_REJECTED = -106;
+
+    /**
+     * [1 OpCodes][1 Difficulty's ordinal][1 n:= Name's length][n Name]
+     * Join a hosted game server's co-op lobby, the matched players fill in the same board at the same time,
+     * so there is no FIRST_MOVE and the moves are sent in FILL_IN_NUMBERS instead of FILL_IN_NUMBER.
+     */
+    byte JOIN_COOP = -107;
+
+    /**
+     * [1 OpCodes][2 sequence][1 n][n * ([1 row][1 col][1 number])], at most {@link FrameDecoder#MAX_BATCH_MOVES} moves.
+     * Sent by a co-op player, the moves are numbered from the sequence (mod 65536) and sent without waiting,
+     * see {@link MovePipeline}. Sent by the server, the moves are the partner's accepted ones in the server's order.
+     * Sent right after the snapshot's GAME_STARTED to resume a game, the moves are numbered by the {@link MoveLog}.
+     */
+    byte FILL_IN_NUMBERS = -108;
+
+    /**
+     * [1 OpCodes][2 sequence][1 n][8 accepted bits]
+     * Acknowledge the n moves of a FILL_IN_NUMBERS from its sequence, bit i is set if the move (sequence + i) is applied,
+     * or it is rejected and not forwarded.
+     */
+    byte MOVES_ACKED = -109;
+
+    /**
+     * [1 OpCodes][1 n:= Name's length][n Player's name]
+     * Watch the game of the player on a hosted game server: the players' SUBMIT_NAME, the current board in GAME_STARTED,
+     * and then every FILL_IN_NUMBER (or FILL_IN_NUMBERS of a co-op game) until GAME_OVER are sent to the spectator.
+     * A spectator falling behind may be sent a GAME_STARTED of the current board instead of the missed moves.
+     * GAME_OVER is sent at once if the player is not in a game.
+     */
+    byte SPECTATE = -110;
+
+    /**
+     * [1 OpCodes][1 row][1 col]
+     * Ask a hosted game server for a hint of the game's board at any time, the board is not changed.
+     */
+    byte HINT_REQUEST = -111;
+
+    /**
+     * [1 OpCodes][1 row][1 col][2 candidates][1 forced row][1 forced col][1 forced number]
+     * The candidates of the requested cell (bit 1 ~ 9, 0 if not empty) and the next forced move on the board,
+     * see {@link sudoku.Sudoku#findForcedMove(byte[])}. If no move is forced, the requested cell's answer from the
+     * puzzle's solution is sent instead, the forced move's fields are -1 if the cell is not empty either.
+     */
+    byte HINT = -112;
+
+    /**
+     * [1 OpCodes][1 row][1 col][1 units]
+     * Sent by a hosted game server to both players once an accepted move at (row, col) completes any of its units,
+     * units is the mask of {@link sudoku.Sudoku#ROW_COMPLETED}, {@link sudoku.Sudoku#COL_COMPLETED} and
+     * {@link sudoku.Sudoku#BOX_COMPLETED}. The events of a round of moves follow the moves' frames.
+     */
+    byte UNITS_COMPLETED = -113;
+
 }
@@ -1,140 +1,319 @@
 package p2p;
 
+import sudoku.Difficulty;
 import sudoku.Inputs;
 import sudoku.Sudoku;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
 
 /**
+ * The client runs an event loop over the {@link EventQueue}: the server's frames are handled as soon as they arrive,
+ * even while the player is typing, and a line typed in the player's turn is the move "row col number".
+ * A line "hint row col" asks the server for a hint at any time, e.g. "hint 0 8", see {@link OpCodes#HINT_REQUEST}.
+ * In the co-op mode (the 4th argument "coop"), the player fills in the partner's board at any time, the moves are
+ * pipelined by the {@link MovePipeline} without waiting for the server's acknowledgements.
+ * If the connection drops, the client reconnects and submits the same name again, and then catches up the game
+ * from the server's latest snapshot and the moves after it, see {@link MoveLog}.
  * @author - johnny850807@gmail.com (Waterball)
  */
 public class P2PClient {
+    private final static int MAX_RECONNECTS = 5;
+    private final static long RECONNECT_DELAY_MILLIS = 1000;
+    private static final EventQueue events = new EventQueue();
     private static Socket socket;
-    private static InputStream in;
     private static OutputStream out;
+    private static final FrameEncoder encoder = new FrameEncoder();
+    private static final FrameDecoder decoder = new FrameDecoder();
     private static Sudoku sudoku;
+    private static final char[] board = new char[Sudoku.RENDERED_LENGTH];  // the reusable render buffer
+    private static final Sudoku boardBeforeYourMove = new Sudoku();  // copied back with the givens if the move is rejected
+    private static final byte[] moves = new byte[FrameDecoder.MAX_BATCH_MOVES * 3];
+    private static final int[] move = new int[3];
+    private static final int[] cell = new int[2];
     private static String myName;
     private static String opponentName;
+    private static Difficulty difficulty;  // joins the hosted game server's lobby with the difficulty if given
+    private static boolean coop;  // joins the hosted game server's co-op lobby
+    private static MovePipeline pipeline;  // the co-op game's moves, created once the game starts
+    private static boolean started;
+    private static boolean yourTurn;
+    private static boolean over;
 
     public static void main(String[] args) throws IOException {
-        connectToServer();
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        difficulty = args.length > 2 ? Difficulty.valueOf(args[2].toUpperCase()) : null;
+        coop = args.length > 3 && args[3].equalsIgnoreCase("coop");
+        events.startConsoleReader(System.in);
+        connectToServer(host, port);
     }
 
-    private static void connectToServer() throws IOException {
-        socket = new Socket("127.0.0.1", 50000);
-        in = socket.getInputStream();
-        out = socket.getOutputStream();
-
-        play();
+    private static void connectToServer(String host, int port) throws IOException {
+        System.out.println("Please input your name: ");
+        myName = events.takeLine();
+        if (myName == null) {
+            return;
+        }
+        System.out.println("Hello " + myName + ".");
+        for (int reconnects = 0; ; reconnects++) {
+            try {
+                socket = new Socket(host, port);
+                socket.setTcpNoDelay(true);
+                out = socket.getOutputStream();
+                play();
+                return;
+            } catch (IOException err) {
+                if (socket != null) {
+                    socket.close();
+                }
+                if (reconnects == MAX_RECONNECTS) {
+                    throw err;
+                }
+                System.err.println("Disconnected from the server, reconnecting ...");
+                sleepBeforeReconnect();
+            }
+        }
     }
 
+    private static void sleepBeforeReconnect() throws IOException {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IOException(err);
+        }
+    }
 
     private static void play() throws IOException {
         sudoku = new Sudoku();
-        myName = Inputs.inputName("Please input your name: ");
+        pipeline = null;
+        started = yourTurn = over = false;
+        events.startSocketReader(socket);
         writeMyName();
-        System.out.println("Hello " + myName + ".");
-        System.out.println("Waiting for your opponent submitting his name ...");
-        opponentName = readOpponentSubmitName();
-        startGame();
-    }
-
-    private static void writeMyName() throws IOException {
-        out.write(OpCodes.SUBMIT_NAME);
-        byte[] nameBytes = myName.getBytes();
-        out.write(nameBytes.length);
-        out.write(nameBytes);
-    }
-
-    private static void startGame() throws IOException {
-        sudoku = readSudokuGameStarted();
-        System.out.println("Game Started.");
-        int round = 0;
-
-        do {
-            System.out.println(sudoku);
-            if (round++ % 2 == 0) {
-                serverTurn();
-            } else {
-                yourTurn();
+        System.out.println("Waiting for your opponent submitting the name ...");
+        while (!over) {
+            EventQueue.Event event = events.take();
+            switch (event.getType()) {
+                case EventQueue.Event.LINE:
+                    onLine(event.getLine());
+                    break;
+                case EventQueue.Event.FRAME:
+                    if (event.getSource() == socket) {  // not a frame left by the dropped connection
+                        decoder.nextFrame(event.getFrame());
+                        onFrame();
+                        decoder.endFrame();
+                    }
+                    break;
+                case EventQueue.Event.DISCONNECTED:
+                    if (event.getSource() == socket) {
+                        throw event.getError();
+                    }
+                    break;
+                default:  // the console is closed
+                    over = true;
             }
-        } while (!sudoku.isSolved());
-
-        readAndAssertOpCode(OpCodes.GAME_OVER);
+        }
         System.out.println("Game over :)");
         socket.close();
     }
 
-    private static Sudoku readSudokuGameStarted() throws IOException {
-        Sudoku sudoku = new Sudoku();
-        readAndAssertOpCode(OpCodes.GAME_STARTED);
-        for (int i = 0; i < 81; i++) {
-            byte b = (byte) in.read();
-            sudoku.put(i / 9, i % 9, b);
+    private static void writeMyName() throws IOException {
+        if (coop) {
+            encoder.joinCoop(difficulty == null ? Difficulty.MEDIUM : difficulty, myName);
+        } else if (difficulty == null) {
+            encoder.submitName(myName);
+        } else {
+            encoder.joinLobby(difficulty, myName);
         }
-        return sudoku;
+        encoder.writeTo(out);
     }
 
-
-    private static void yourTurn() throws IOException {
-        do {
-            try {
-                int row = Inputs.inputNumInRange("Row index: ", 0, 8);
-                int col = Inputs.inputNumInRange("Column index: ", 0, 8);
-                int num = Inputs.inputNumInRange("Please input the number to fill in: ", 1, 9);
+    private static void onFrame() {
+        switch (decoder.getOpCode()) {
+            case OpCodes.SUBMIT_NAME:
+                opponentName = decoder.readName();
+                System.out.printf("Your opponent is %s.\n", opponentName);
+                break;
+            case OpCodes.GAME_STARTED:
+                decoder.readBoard(sudoku);
+                started = true;
+                System.out.println("Game Started, input \"hint row col\" for a hint at any time, e.g. \"hint 0 8\".");
+                if (coop) {
+                    pipeline = new MovePipeline(sudoku);
+                    yourTurn = true;  // always
+                    System.out.println("Fill in the board with your partner at any time, " +
+                            "input the row index, the column index and the number, e.g. \"0 8 9\": ");
+                }
+                printBoard();
+                break;
+            case OpCodes.FILL_IN_NUMBERS:
+                if (coop) {
+                    onCoopFrame();
+                } else {
+                    catchUp();
+                }
+                break;
+            case OpCodes.MOVES_ACKED:
+                onCoopFrame();
+                break;
+            case OpCodes.FIRST_MOVE:
+                System.out.println("You move first.");
+                startYourTurn();
+                break;
+            case OpCodes.MOVE_REJECTED:
+                byte rejectedRow = decoder.readByte();
+                byte rejectedCol = decoder.readByte();
+                byte rejectedNum = decoder.readByte();
+                boardBeforeYourMove.copyTo(sudoku);
+                System.err.printf("The server rejected your move: the number %d at (%d, %d).\n\n",
+                        rejectedNum, rejectedRow, rejectedCol);
+                printBoard();
+                startYourTurn();
+                break;
+            case OpCodes.FILL_IN_NUMBER:
+                byte row = decoder.readByte();
+                byte col = decoder.readByte();
+                byte num = decoder.readByte();
                 sudoku.put(row, col, num);
-                writeFillInNumber(row, col, num);
-                System.out.printf("%s put the number %d at (%d, %d).\n\n", myName, num, row, col);
+                System.out.printf("%s put the number %d at (%d, %d).\n\n", opponentName, num, row, col);
+                printBoard();
+                if (!sudoku.isSolved()) {
+                    startYourTurn();
+                }
                 break;
-            } catch (Sudoku.InvalidException err) {
-                System.err.println(err.getMessage() + "\n");
-                System.out.println(sudoku);
-            }
-        } while (true);
+            case OpCodes.UNITS_COMPLETED:
+                printUnitsCompleted();
+                break;
+            case OpCodes.HINT:
+                printHint();
+                break;
+            case OpCodes.GAME_OVER:
+                over = true;
+                break;
+            default:
+                throw new IllegalStateException("OpCode incorrect, given " + decoder.getOpCode());
+        }
+    }
+
+    private static void startYourTurn() {
+        yourTurn = true;
+        System.out.println("Your turn, input the row index, the column index and the number to fill in, e.g. \"0 8 9\": ");
     }
 
-    private static void serverTurn() throws IOException {
+    private static void onLine(String line) throws IOException {
+        if (line.isEmpty()) {
+            return;
+        }
+        if (Inputs.parseHint(line, cell)) {
+            requestHint();
+            return;
+        }
+        if (!yourTurn) {
+            System.err.println("Not your turn, please wait for your opponent.");
+            return;
+        }
+        if (!Inputs.parseMove(line, move)) {
+            System.err.println("Please input the row index (0 ~ 8), the column index (0 ~ 8) and the number (1 ~ 9).");
+            return;
+        }
+        if (pipeline != null) {
+            coopMove();
+            return;
+        }
+        try {
+            sudoku.copyTo(boardBeforeYourMove);
+            sudoku.put(move[0], move[1], move[2]);
+        } catch (Sudoku.InvalidException err) {
+            System.err.println(err.getMessage() + "\n");
+            return;
+        }
+        yourTurn = false;
+        writeFillInNumber(move[0], move[1], move[2]);
+        System.out.printf("%s put the number %d at (%d, %d).\n\n", myName, move[2], move[0], move[1]);
+        printBoard();
         System.out.println("Waiting for your opponent ...");
-        readAndAssertOpCode(OpCodes.FILL_IN_NUMBER);
-        byte row = (byte) in.read();
-        byte col = (byte) in.read();
-        byte num = (byte) in.read();
-        sudoku.put(row, col, num);
-        System.out.printf("%s put the number %d at (%d, %d).\n\n", opponentName, num, row, col);
     }
 
-    private static void writeFillInNumber(int row, int col, int num) throws IOException {
-        out.write(OpCodes.FILL_IN_NUMBER);
-        out.write(row);
-        out.write(col);
-        out.write(num);
+    /**
+     * Apply the co-op move to the local board at once, and send it without waiting for the acknowledgement.
+     */
+    private static void coopMove() throws IOException {
+        if (!pipeline.move(move[0], move[1], move[2])) {
+            System.err.printf("The number %d can't be put at (%d, %d).\n\n", move[2], move[0], move[1]);
+            return;
+        }
+        pipeline.flush(encoder);
+        encoder.writeTo(out);
+        printBoard();
     }
 
-    private static String readOpponentSubmitName() throws IOException {
-        readAndAssertOpCode(OpCodes.SUBMIT_NAME);
-        byte nameLength = (byte) in.read();
-        byte[] name = new byte[nameLength];
-        for (int i = 0; i < nameLength; i++) {
-            name[i] = (byte) in.read();
+    private static void requestHint() throws IOException {
+        if (!started) {
+            System.err.println("The game has not started.");
+            return;
         }
-        return new String(name, StandardCharsets.UTF_8);
+        encoder.hintRequest(cell[0], cell[1]).writeTo(out);
     }
 
+    private static void printHint() {
+        byte row = decoder.readByte();
+        byte col = decoder.readByte();
+        int candidates = decoder.readUnsignedShort();
+        byte forcedRow = decoder.readByte();
+        byte forcedCol = decoder.readByte();
+        byte forcedNum = decoder.readByte();
+        System.out.printf("The candidates at (%d, %d): %s\n", row, col, Inputs.formatCandidates(candidates));
+        if (forcedRow >= 0) {
+            System.out.printf("Hint: put the number %d at (%d, %d).\n", forcedNum, forcedRow, forcedCol);
+        }
+        System.out.println();
+    }
 
-    private static byte readAndAssertOpCode(byte... expectedOpCodes) throws IOException {
-        byte b = (byte) in.read();
-        for (byte expectedOpCode : expectedOpCodes) {
-            if (expectedOpCode == b) {
-                return b;
-            }
+    private static void onCoopFrame() {
+        if (pipeline == null) {
+            throw new IllegalStateException("The co-op game has not started.");
         }
-        throw new IllegalStateException("OpCode incorrect, given " + b);
+        long rejected = pipeline.getRejectedMoves();
+        pipeline.onFrame(decoder);
+        if (pipeline.getRejectedMoves() > rejected) {
+            System.err.println("The server rejected your moves conflicting with your partner's.");
+        }
+        printBoard();
     }
 
-}
+    private static void catchUp() {
+        decoder.readUnsignedShort();
+        int count = decoder.readMoves(moves);
+        for (int i = 0; i < count; i++) {
+            sudoku.put(moves[i * 3], moves[i * 3 + 1], moves[i * 3 + 2]);
+        }
+        System.out.printf("Caught up %d moves.\n", count);
+        printBoard();
+    }
 
+    private static void printUnitsCompleted() {
+        byte row = decoder.readByte();
+        byte col = decoder.readByte();
+        byte units = decoder.readByte();
+        if ((units & Sudoku.ROW_COMPLETED) != 0) {
+            System.out.printf("The row %d is complete.\n", row);
+        }
+        if ((units & Sudoku.COL_COMPLETED) != 0) {
+            System.out.printf("The column %d is complete.\n", col);
+        }
+        if ((units & Sudoku.BOX_COMPLETED) != 0) {
+            System.out.printf("The box at (%d, %d) is complete.\n", row / 3, col / 3);
+        }
+    }
+
+    private static void printBoard() {
+        (pipeline == null ? sudoku : pipeline.getBoard()).render(board);
+        System.out.println(board);
+    }
 
+    private static void writeFillInNumber(int row, int col, int num) throws IOException {
+        encoder.fillInNumber(row, col, num).writeTo(out);
+    }
+}
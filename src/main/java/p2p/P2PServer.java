@@ -1,140 +1,363 @@
 package p2p;
 
+import metrics.Histogram;
+import metrics.Metrics;
+import sudoku.Difficulty;
 import sudoku.Inputs;
+import sudoku.PuzzlePool;
+import sudoku.SolutionCache;
 import sudoku.Sudoku;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * If the client is disconnected during the game, the next client submitting the same name resumes the game
+ * from the {@link MoveLog}, otherwise a new game is started.
+ * The game is written ahead to the {@link GameJournal}, so that the game is also resumed after the server restarts.
+ * The server runs an event loop over the {@link EventQueue} like the {@link P2PClient}, a line typed in the server's
+ * turn is the move "row col number", and a line "hint row col" shows a hint at any time.
+ * The units completed by every accepted move are told to the client in UNITS_COMPLETED and shown to the server's
+ * player. The client's HINT_REQUEST is also answered at any time of the game, see {@link OpCodes#HINT_REQUEST}.
  * @author - johnny850807@gmail.com (Waterball)
  */
 public class P2PServer {
+    private static final LongAdder MOVES_ACCEPTED = Metrics.counter("moves.accepted");
+    private static final LongAdder MOVES_REJECTED = Metrics.counter("moves.rejected");
+    private static final Histogram TURN_NANOS = Metrics.histogram("game.turn.nanos");
+    private static final LongAdder HINTS = Metrics.counter("hints");
     private static ServerSocket server;
+    private static final EventQueue events = new EventQueue();
     private static Socket client;
-    private static InputStream in;
     private static OutputStream out;
+    private static final FrameEncoder encoder = new FrameEncoder();
+    private static final FrameDecoder decoder = new FrameDecoder();
     private static String myName;
     private static String opponentName;
     private static Sudoku sudoku;
+    private static final char[] board = new char[Sudoku.RENDERED_LENGTH];  // the reusable render buffer
+    private static final int[] move = new int[3];
+    private static final int[] cell = new int[2];
+    private static final byte[] forcedMove = new byte[3];
+    private static final byte[] startBoard = new byte[81];
+    private static byte[] solution;  // of the start board, found on the first hint which has no forced move
+    private static MoveLog moveLog;  // the server moves on the even moves
+    private static PuzzlePool puzzlePool;
+    private static GameJournal journal;
+    private static int gameId;
+    private static boolean playing;  // the client's name is received and the game is started or resumed
+    private static long turnStartNanos;
 
     public static void main(String[] args) throws IOException {
+        Metrics.registerMBean();
+        Metrics.dumpOnShutdown(System.err);
+        events.startConsoleReader(System.in);
+        journal = new GameJournal(Path.of(args.length > 0 ? args[0] : "p2p-server.journal"), true);
+        recoverGame();
+        puzzlePool = new PuzzlePool(1, 2, 1);  // the puzzles are generated while waiting for the players
         server = new ServerSocket(50000);
-        acceptClient();
+        acceptClients();
     }
 
-    private static void acceptClient() throws IOException {
-        try {
+    /**
+     * Replay the last game not over from the journal, and wait for the opponent to reconnect.
+     */
+    private static void recoverGame() throws IOException {
+        GameJournal.Game game = null;
+        for (GameJournal.Game unfinished : journal.getUnfinishedGames()) {
+            if (game != null) {
+                journal.gameOver(game.getId());  // only a game is played at a time, the older ones are abandoned
+            }
+            game = unfinished;
+        }
+        journal.commit();
+        if (game == null) {
+            return;
+        }
+        gameId = game.getId();
+        myName = game.getFirstName();
+        opponentName = game.getSecondName();
+        sudoku = game.getStartBoard();
+        sudoku.snapshot(startBoard);
+        solution = null;
+        moveLog = new MoveLog(sudoku);
+        byte[] moves = game.getMoves();
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            sudoku.put(moves[i * 3], moves[i * 3 + 1], moves[i * 3 + 2]);
+            moveLog.append(moves[i * 3], moves[i * 3 + 1], moves[i * 3 + 2]);
+        }
+        System.out.printf("Hello %s, the game against %s is recovered after %d moves.\n",
+                myName, opponentName, moveLog.size());
+    }
+
+    /**
+     * Serve the clients one at a time until a game is over, a client gone or breaking the protocol is closed,
+     * and the next client submitting the same name resumes the game.
+     */
+    private static void acceptClients() throws IOException {
+        while (true) {
             client = server.accept();
-            in = client.getInputStream();
-            out = client.getOutputStream();
-            play();
-        } catch (IOException | IllegalStateException err) {
-            client.close();
-            acceptClient(); // serve the next client
+            try {
+                client.setTcpNoDelay(true);
+                out = client.getOutputStream();
+                play();
+                return;
+            } catch (IOException | IllegalStateException err) {
+                System.err.println("The opponent is gone, waiting for the next client ...");
+            } finally {
+                client.close();
+            }
         }
     }
 
     private static void play() throws IOException {
-        sudoku = new Sudoku();
-        myName = Inputs.inputName("Please input your name: ");
-        System.out.println("Hello " + myName  + ".");
-        System.out.println("Waiting for your opponent submitting his name ...");
+        if (myName == null) {
+            System.out.println("Please input your name: ");
+            myName = events.takeLine();
+            if (myName == null) {
+                return;
+            }
+            System.out.println("Hello " + myName  + ".");
+        }
+        playing = false;
+        events.startSocketReader(client);
+        System.out.println("Waiting for your opponent submitting the name ...");
         writeMyName();
-        opponentName = readOpponentSubmitName();
-        startGame();
+        while (!playing || !sudoku.isSolved()) {
+            EventQueue.Event event = events.take();
+            switch (event.getType()) {
+                case EventQueue.Event.LINE:
+                    onLine(event.getLine());
+                    break;
+                case EventQueue.Event.FRAME:
+                    if (event.getSource() == client) {  // not a frame left by the dropped client
+                        decoder.nextFrame(event.getFrame());
+                        onFrame();
+                        decoder.endFrame();
+                    }
+                    break;
+                case EventQueue.Event.DISCONNECTED:
+                    if (event.getSource() == client) {
+                        throw event.getError();
+                    }
+                    break;
+                default:  // the console is closed, the game is left in the journal to be resumed
+                    return;
+            }
+        }
+        journal.gameOver(gameId);
+        journal.commit();
+        encoder.opCode(OpCodes.GAME_OVER).writeTo(out);
+        System.out.println("Game over :)");
     }
 
     private static void writeMyName() throws IOException {
-        out.write(OpCodes.SUBMIT_NAME);
-        byte[] nameBytes = myName.getBytes();
-        out.write(nameBytes.length);
-        out.write(nameBytes);
+        encoder.submitName(myName).writeTo(out);
+    }
+
+    private static void onFrame() throws IOException {
+        if (!playing) {
+            assertOpCode(OpCodes.SUBMIT_NAME);
+            String name = decoder.readName();
+            playing = true;
+            if (moveLog != null && !sudoku.isSolved() && name.equals(opponentName)) {
+                resumeGame();
+            } else {
+                opponentName = name;
+                startGame();
+            }
+        } else if (decoder.getOpCode() == OpCodes.HINT_REQUEST) {
+            onHintRequest(decoder.readByte(), decoder.readByte());
+        } else if (isServerTurn()) {
+            throw new IllegalStateException("Not the client's turn.");
+        } else {
+            assertOpCode(OpCodes.FILL_IN_NUMBER);
+            onClientMove(decoder.readByte(), decoder.readByte(), decoder.readByte());
+        }
     }
 
     private static void startGame() throws IOException {
-        System.out.println("Generating the puzzle ... ");
-        sudoku.generateSolvablePuzzle();
+        sudoku = puzzlePool.take(Difficulty.MEDIUM);
+        sudoku.snapshot(startBoard);
+        solution = null;
+        moveLog = new MoveLog(sudoku);
+        gameId = journal.gameStarted(sudoku, myName, opponentName);
+        journal.commit();
         writeGameStarted();
         System.out.println("Game Started.");
+        startTurn();
+    }
 
-        int round = 0;
-        do {
-            System.out.println(sudoku);
-            if (round++ % 2 == 0) {  // server's turn
-                yourTurn();
-            } else { // client's turn
-                clientTurn();
-            }
-        } while (!sudoku.isSolved());
+    /**
+     * Send the latest snapshot and the moves after it to the reconnected client, and continue the game.
+     */
+    private static void resumeGame() throws IOException {
+        moveLog.writeResume(encoder);
+        if (!isServerTurn()) {
+            encoder.opCode(OpCodes.FIRST_MOVE);  // the client's turn
+        }
+        encoder.writeTo(out);
+        System.out.println(opponentName + " is back, the game is resumed.");
+        startTurn();
+    }
 
-        out.write(OpCodes.GAME_OVER);
-        client.close();
+    private static boolean isServerTurn() {
+        return moveLog.size() % 2 == 0;  // the server moves on the even moves
     }
 
+    private static void startTurn() {
+        turnStartNanos = System.nanoTime();
+        printBoard();
+        if (sudoku.isSolved()) {
+            return;
+        }
+        if (isServerTurn()) {
+            System.out.println("Your turn, input the row index, the column index and the number to fill in, e.g. \"0 8 9\": ");
+        } else {
+            System.out.println("Waiting for your opponent ...");
+        }
+    }
 
-    private static void yourTurn() throws IOException {
-        do {
-            try {
-                int row = Inputs.inputNumInRange("Row index: ", 0, 8);
-                int col = Inputs.inputNumInRange("Column index: ", 0, 8);
-                int num = Inputs.inputNumInRange("Please input the number to fill in: ", 1, 9);
-                sudoku.put(row, col, num);
-                writeFillInNumber(row, col, num);
-                System.out.printf("%s put the number %d at (%d, %d).\n\n", myName, num, row, col);
-                break;
-            } catch (Sudoku.InvalidException err) {
-                System.err.println(err.getMessage() + "\n");
-                System.out.println(sudoku);
-            }
-        } while (true);
+    private static void onLine(String line) throws IOException {
+        if (line.isEmpty()) {
+            return;
+        }
+        if (playing && Inputs.parseHint(line, cell)) {
+            printHint(cell[0], cell[1]);
+            return;
+        }
+        if (!playing || !isServerTurn()) {
+            System.err.println("Not your turn, please wait for your opponent.");
+            return;
+        }
+        if (!Inputs.parseMove(line, move)) {
+            System.err.println("Please input the row index (0 ~ 8), the column index (0 ~ 8) and the number (1 ~ 9).");
+            return;
+        }
+        int row = move[0], col = move[1], num = move[2];
+        try {
+            sudoku.put(row, col, num);
+        } catch (Sudoku.InvalidException err) {
+            System.err.println(err.getMessage() + "\n");
+            return;
+        }
+        moveLog.append(row, col, num);  // kept for the client to catch up if the write fails
+        journal.move(gameId, row, col, num);
+        journal.commit();
+        writeFillInNumber(row, col, num);
+        System.out.printf("%s put the number %d at (%d, %d).\n\n", myName, num, row, col);
+        announceUnitsCompleted(row, col);
+        TURN_NANOS.recordSince(turnStartNanos);
+        startTurn();
     }
 
-    private static void clientTurn() throws IOException {
-        System.out.println("Waiting for your opponent ...");
-        readAndAssertOpCode(OpCodes.FILL_IN_NUMBER);
-        byte row = (byte) in.read();
-        byte col = (byte) in.read();
-        byte num = (byte) in.read();
+    private static void onClientMove(byte row, byte col, byte num) throws IOException {
+        if (!sudoku.isValidPut(row, col, num)) {
+            MOVES_REJECTED.increment();
+            encoder.moveRejected(row, col, num).writeTo(out);  // the server's board is authoritative
+            return;
+        }
         sudoku.put(row, col, num);
+        MOVES_ACCEPTED.increment();
+        TURN_NANOS.recordSince(turnStartNanos);
+        moveLog.append(row, col, num);
+        journal.move(gameId, row, col, num);
+        journal.commit();
         System.out.printf("%s put the number %d at (%d, %d).\n\n", opponentName, num, row, col);
+        announceUnitsCompleted(row, col);
+        startTurn();
     }
 
-    private static String readOpponentSubmitName() throws IOException {
-        readAndAssertOpCode(OpCodes.SUBMIT_NAME);
-        byte nameLength = (byte) in.read();
-        byte[] name = new byte[nameLength];
-        for (int i = 0; i < nameLength; i++) {
-            name[i] = (byte) in.read();
+    /**
+     * Tell both players the units completed by the accepted move at (row, col), if any.
+     */
+    private static void announceUnitsCompleted(int row, int col) throws IOException {
+        int units = sudoku.getCompletedUnits(row, col);
+        if (units == 0) {
+            return;
+        }
+        encoder.unitsCompleted(row, col, units).writeTo(out);
+        if ((units & Sudoku.ROW_COMPLETED) != 0) {
+            System.out.printf("The row %d is complete.\n", row);
+        }
+        if ((units & Sudoku.COL_COMPLETED) != 0) {
+            System.out.printf("The column %d is complete.\n", col);
+        }
+        if ((units & Sudoku.BOX_COMPLETED) != 0) {
+            System.out.printf("The box at (%d, %d) is complete.\n", row / 3, col / 3);
         }
-        return new String(name, StandardCharsets.UTF_8);
     }
 
-    private static void writeGameStarted() throws IOException {
-        out.write(OpCodes.GAME_STARTED);
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                out.write(sudoku.get(row, col));
+    /**
+     * Answer the client's hint from the server's board without changing it, whoever's turn it is.
+     */
+    private static void onHintRequest(byte row, byte col) throws IOException {
+        if (row < 0 || row > 8 || col < 0 || col > 8) {
+            throw new IllegalStateException("The cell is out of the board.");
+        }
+        HINTS.increment();
+        boolean forced = findHint(row, col);
+        encoder.hint(row, col, sudoku.getCandidates(row, col), forced ? forcedMove : null).writeTo(out);
+    }
+
+    private static void printHint(int row, int col) {
+        HINTS.increment();
+        System.out.printf("The candidates at (%d, %d): %s\n", row, col,
+                Inputs.formatCandidates(sudoku.getCandidates(row, col)));
+        if (findHint(row, col)) {
+            System.out.printf("Hint: put the number %d at (%d, %d).\n", forcedMove[2], forcedMove[0], forcedMove[1]);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Find the next forced move, or else take the requested cell's answer from the start board's solution,
+     * which is solved once through the {@link SolutionCache}.
+     * @return false if neither is found
+     */
+    private static boolean findHint(int row, int col) {
+        if (sudoku.findForcedMove(forcedMove)) {
+            return true;
+        }
+        if (!sudoku.isEmpty(row, col)) {
+            return false;
+        }
+        if (solution == null) {
+            Sudoku start = new Sudoku();
+            start.restore(startBoard);
+            byte[] solution = new byte[81];
+            if (!SolutionCache.getDefault().getSolution(start, solution)) {
+                return false;
             }
+            P2PServer.solution = solution;
         }
+        forcedMove[0] = (byte) row;
+        forcedMove[1] = (byte) col;
+        forcedMove[2] = solution[row * 9 + col];
+        return true;
+    }
+
+    private static void writeGameStarted() throws IOException {
+        encoder.gameStarted(sudoku).writeTo(out);
     }
 
-    private static void readAndAssertOpCode(byte expectedOpCode) throws IOException {
-        byte nextOp = (byte) in.read();
-        if (expectedOpCode != nextOp) {
+    private static void assertOpCode(byte expectedOpCode) {
+        if (expectedOpCode != decoder.getOpCode()) {
             throw new IllegalStateException("OpCode incorrect.");
         }
     }
 
+    private static void printBoard() {
+        sudoku.render(board);
+        System.out.println(board);
+    }
+
     private static void writeFillInNumber(int row, int col, int num) throws IOException {
-        out.write(OpCodes.FILL_IN_NUMBER);
-        out.write(row);
-        out.write(col);
-        out.write(num);
+        encoder.fillInNumber(row, col, num).writeTo(out);
     }
 
 }
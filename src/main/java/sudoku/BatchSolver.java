@@ -0,0 +1,197 @@
+package sudoku;
+
+import metrics.Metrics;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Solve the puzzles in the 81-char line format (see {@link Sudoku#setLine(CharSequence)}) across the cores of a
+ * fork-join pool, and write the answers in the input order.
+ * The lines are split into the tasks of {@link #LEAF_SIZE} puzzles. A puzzle not solved within the node limit
+ * is split further by branching on its first empty cell's candidates, and the branches are solved in parallel
+ * until any one finds a solution, so that a single hard puzzle does not hold the whole run on one core.
+ * Usage: java sudoku.BatchSolver [parallelism] &lt; puzzles.txt &gt; answers.txt
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class BatchSolver {
+    /**
+     * The answer line of a puzzle which is malformed or has no solutions.
+     */
+    public final static String NO_SOLUTION = "no solution";
+    public final static long DEFAULT_NODE_LIMIT = 2000;
+    private final static int LEAF_SIZE = 16;
+    private final static int CHUNK_SIZE = 16384;  // the lines read ahead while the previous chunk is being solved
+    private final ForkJoinPool pool;
+    private final long nodeLimit;
+
+    public BatchSolver() {
+        this(ForkJoinPool.commonPool(), DEFAULT_NODE_LIMIT);
+    }
+
+    /**
+     * @param nodeLimit the search nodes of a puzzle (or a branch) before it is split
+     */
+    public BatchSolver(ForkJoinPool pool, long nodeLimit) {
+        this.pool = pool;
+        this.nodeLimit = nodeLimit;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int parallelism = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in), 1 << 16);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        long start = System.nanoTime();
+        long puzzles = new BatchSolver(pool, DEFAULT_NODE_LIMIT).solve(in, out);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Solved %d puzzles in %.2f seconds (%.0f boards/sec) with %d threads.\n",
+                puzzles, seconds, puzzles / seconds, parallelism);
+        Metrics.dump(System.err);
+        pool.shutdown();
+    }
+
+    /**
+     * Solve every line of the reader and write the answers line by line, the blank lines are skipped.
+     * @return the number of the puzzles
+     */
+    public long solve(BufferedReader in, Writer out) throws IOException {
+        long count = 0;
+        String[] puzzles = readChunk(in);
+        while (puzzles.length > 0) {
+            String[] answers = new String[puzzles.length];
+            ForkJoinTask<Void> task = pool.submit(new SolveRange(puzzles, answers, 0, puzzles.length));
+            String[] next = readChunk(in);
+            task.join();
+            for (String answer : answers) {
+                out.write(answer);
+                out.write('\n');
+            }
+            count += puzzles.length;
+            puzzles = next;
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * @return the answers in the 81-char line format in the order of the puzzles, or {@link #NO_SOLUTION}
+     */
+    public String[] solve(String[] puzzles) {
+        String[] answers = new String[puzzles.length];
+        pool.invoke(new SolveRange(puzzles, answers, 0, puzzles.length));
+        return answers;
+    }
+
+    private static String[] readChunk(BufferedReader in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while (lines.size() < CHUNK_SIZE && (line = in.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    private class SolveRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final String[] puzzles;
+        private final String[] answers;
+        private final int from, to;
+
+        SolveRange(String[] puzzles, String[] answers, int from, int to) {
+            this.puzzles = puzzles;
+            this.answers = answers;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SolveRange(puzzles, answers, from, mid), new SolveRange(puzzles, answers, mid, to));
+                return;
+            }
+            ConstraintPropagationSolver solver = new ConstraintPropagationSolver();
+            for (int i = from; i < to; i++) {
+                answers[i] = solve(solver, puzzles[i]);
+            }
+        }
+
+        private String solve(ConstraintPropagationSolver solver, String puzzle) {
+            Sudoku sudoku = new Sudoku();
+            try {
+                sudoku.setLine(puzzle);
+            } catch (Sudoku.BoardInvalidException err) {
+                return NO_SOLUTION;
+            }
+            if (solver.solve(sudoku, nodeLimit)) {
+                return sudoku.toLine();
+            }
+            Sudoku answer = solver.hasExceededNodeLimit() ? split(sudoku, new AtomicBoolean()) : null;
+            return answer == null ? NO_SOLUTION : answer.toLine();
+        }
+    }
+
+    /**
+     * Solve the branches of the first empty cell's candidates in parallel.
+     * @param found set once any branch is solved, so that the others stop splitting
+     * @return the solved branch, or null if there is no solution
+     */
+    private Sudoku split(Sudoku sudoku, AtomicBoolean found) {
+        int i = 0;
+        while (!sudoku.isEmpty(i / 9, i % 9)) {
+            i++;
+        }
+        int row = i / 9, col = i % 9;
+        int candidates = sudoku.getCandidates(row, col);
+        List<Branch> branches = new ArrayList<>(Integer.bitCount(candidates));
+        for (int num = 1; num <= 9; num++) {
+            if ((candidates & (1 << num)) != 0) {
+                Sudoku branch = new Sudoku();
+                sudoku.copyTo(branch);
+                branch.fill(row, col, num);
+                branches.add(new Branch(branch, found));
+            }
+        }
+        for (Branch branch : ForkJoinTask.invokeAll(branches)) {
+            if (branch.join() != null) {
+                return branch.join();
+            }
+        }
+        return null;
+    }
+
+    private class Branch extends RecursiveTask<Sudoku> {
+        private static final long serialVersionUID = 1L;
+        private final Sudoku sudoku;
+        private final AtomicBoolean found;
+
+        Branch(Sudoku sudoku, AtomicBoolean found) {
+            this.sudoku = sudoku;
+            this.found = found;
+        }
+
+        @Override
+        protected Sudoku compute() {
+            if (found.get()) {
+                return null;
+            }
+            ConstraintPropagationSolver solver = new ConstraintPropagationSolver();
+            if (solver.solve(sudoku, nodeLimit)) {
+                found.set(true);
+                return sudoku;
+            }
+            return solver.hasExceededNodeLimit() ? split(sudoku, found) : null;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package sudoku;
+
+import metrics.Histogram;
+import metrics.Metrics;
+
+import java.util.Random;
+
+/**
+ * The solver propagates the naked singles and the hidden singles, and then branches on the
+ * most constrained cell (the one with the fewest candidates) until the board is solved.
+ * The search works on its own flat copy of the board, which is written back only if solved.
+ * Given a random, the candidates of a branch are tried from a random one, so that the solver
+ * can be used to generate random grids.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class ConstraintPropagationSolver implements Solver {
+    private static final int ALL = 0x3FE;  // bit 1 ~ 9
+    private static final Histogram NODES = Metrics.histogram("solver.propagation.nodes");  // per solve, cheaper than the clock
+    private static final int[] ROW = new int[81];
+    private static final int[] COL = new int[81];
+    private static final int[] BOX = new int[81];
+    private static final int[][] UNITS = new int[27][9];  // 9 rows, 9 columns and then 9 boxes
+
+    static {
+        for (int i = 0; i < 81; i++) {
+            ROW[i] = i / 9;
+            COL[i] = i % 9;
+            BOX[i] = ROW[i] / 3 * 3 + COL[i] / 3;
+            UNITS[ROW[i]][COL[i]] = i;
+            UNITS[9 + COL[i]][ROW[i]] = i;
+            UNITS[18 + BOX[i]][ROW[i] % 3 * 3 + COL[i] % 3] = i;
+        }
+    }
+
+    private final byte[] cells = new byte[81];
+    private final int[] rowMasks = new int[9];
+    private final int[] colMasks = new int[9];
+    private final int[] boxMasks = new int[9];
+    private final int[] trail = new int[81];  // the filled cells in order, for backtracking
+    private int trailSize;
+    private final Random random;
+    private long nodeLimit = Long.MAX_VALUE;  // the searches before giving up
+    private long nodes;
+
+    public ConstraintPropagationSolver() {
+        this(null);
+    }
+
+    public ConstraintPropagationSolver(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    public boolean solve(Sudoku sudoku) {
+        return solve(sudoku, Long.MAX_VALUE);
+    }
+
+    /**
+     * Solve the sudoku within the number of the search nodes, see {@link #hasExceededNodeLimit()} if not solved.
+     */
+    boolean solve(Sudoku sudoku, long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+        nodes = 0;
+        load(sudoku);
+        boolean solved = search();
+        NODES.record(nodes);
+        if (!solved) {
+            return false;
+        }
+        for (int i = 0; i < 81; i++) {
+            if (sudoku.isEmpty(ROW[i], COL[i])) {
+                sudoku.fill(ROW[i], COL[i], cells[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the last solve gave up because of the node limit, i.e. whether the sudoku has a solution is unknown
+     */
+    boolean hasExceededNodeLimit() {
+        return nodes > nodeLimit;
+    }
+
+    private void load(Sudoku sudoku) {
+        trailSize = 0;
+        for (int i = 0; i < 9; i++) {
+            rowMasks[i] = colMasks[i] = boxMasks[i] = 0;
+        }
+        for (int i = 0; i < 81; i++) {
+            cells[i] = 0;
+            if (!sudoku.isEmpty(ROW[i], COL[i])) {
+                place(i, sudoku.get(ROW[i], COL[i]));
+            }
+        }
+        trailSize = 0;  // the givens are never backtracked
+    }
+
+    private boolean search() {
+        if (++nodes > nodeLimit) {
+            return false;
+        }
+        int mark = trailSize;
+        if (!propagate()) {
+            undo(mark);
+            return false;
+        }
+        int best = -1;
+        int bestCount = 10;
+        for (int i = 0; i < 81 && bestCount > 2; i++) {
+            if (cells[i] == 0) {
+                int count = Integer.bitCount(candidates(i));
+                if (count < bestCount) {
+                    best = i;
+                    bestCount = count;
+                }
+            }
+        }
+        if (best < 0) {
+            return true;  // no empty cells left
+        }
+        int candidates = candidates(best);
+        int first = random == null ? 0 : random.nextInt(9);
+        for (int k = 0; k < 9; k++) {
+            int num = (first + k) % 9 + 1;
+            if ((candidates & (1 << num)) != 0) {
+                int branchMark = trailSize;
+                place(best, num);
+                if (search()) {
+                    return true;
+                }
+                undo(branchMark);
+            }
+        }
+        undo(mark);
+        return false;
+    }
+
+    /**
+     * Fill all the naked singles and hidden singles until nothing changes.
+     * @return false if any contradiction is found
+     */
+    private boolean propagate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < 81; i++) {
+                if (cells[i] == 0) {
+                    int candidates = candidates(i);
+                    if (candidates == 0) {
+                        return false;
+                    }
+                    if ((candidates & (candidates - 1)) == 0) {
+                        place(i, Integer.numberOfTrailingZeros(candidates));
+                        changed = true;
+                    }
+                }
+            }
+            for (int[] unit : UNITS) {
+                int placed = 0, once = 0, twice = 0;
+                for (int i : unit) {
+                    if (cells[i] == 0) {
+                        int candidates = candidates(i);
+                        twice |= once & candidates;
+                        once |= candidates;
+                    } else {
+                        placed |= 1 << cells[i];
+                    }
+                }
+                if ((placed | once) != ALL) {
+                    return false;  // some number has nowhere to go in this unit
+                }
+                int singles = once & ~twice;
+                while (singles != 0) {
+                    int bit = singles & -singles;
+                    singles ^= bit;
+                    for (int i : unit) {
+                        if (cells[i] == 0 && (candidates(i) & bit) != 0) {
+                            place(i, Integer.numberOfTrailingZeros(bit));
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private int candidates(int i) {
+        return ~(rowMasks[ROW[i]] | colMasks[COL[i]] | boxMasks[BOX[i]]) & ALL;
+    }
+
+    private void place(int i, int num) {
+        int bit = 1 << num;
+        cells[i] = (byte) num;
+        rowMasks[ROW[i]] |= bit;
+        colMasks[COL[i]] |= bit;
+        boxMasks[BOX[i]] |= bit;
+        trail[trailSize++] = i;
+    }
+
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            int i = trail[--trailSize];
+            int bit = ~(1 << cells[i]);
+            rowMasks[ROW[i]] &= bit;
+            colMasks[COL[i]] &= bit;
+            boxMasks[BOX[i]] &= bit;
+            cells[i] = 0;
+        }
+    }
+}
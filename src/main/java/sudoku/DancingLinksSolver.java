@@ -0,0 +1,185 @@
+package sudoku;
+
+/**
+ * Knuth's Algorithm X over the sudoku's exact cover matrix, implemented with dancing links.
+ * The matrix has 324 columns (cell, row-number, column-number and box-number constraints)
+ * and 729 rows (every number in every cell), it's built once and then every call covers the
+ * given cells, searches and uncovers them back, so solving doesn't allocate in the steady state.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class DancingLinksSolver implements Solver {
+    private static final int COLUMNS = 324;
+    private static final int ROWS = 729;
+    private static final int ROOT = 0;
+    private static final int SIZE = 1 + COLUMNS + ROWS * 4;  // root, column headers and then the nodes
+
+    private final int[] left = new int[SIZE];
+    private final int[] right = new int[SIZE];
+    private final int[] up = new int[SIZE];
+    private final int[] down = new int[SIZE];
+    private final int[] column = new int[SIZE];
+    private final int[] rowOf = new int[SIZE];
+    private final int[] columnSize = new int[1 + COLUMNS];
+    private final boolean[] covered = new boolean[1 + COLUMNS];
+
+    private final int[] givenColumns = new int[COLUMNS];  // covered by the given cells, in order
+    private int givenColumnCount;
+    private final int[] chosenRows = new int[81];
+    private final byte[] solution = new byte[81];
+    private int solutionCount;
+    private int limit;
+
+    public DancingLinksSolver() {
+        for (int c = 0; c <= COLUMNS; c++) {
+            left[c] = c - 1;
+            right[c] = c + 1;
+            up[c] = down[c] = column[c] = c;
+        }
+        left[ROOT] = COLUMNS;
+        right[COLUMNS] = ROOT;
+        for (int r = 0; r < ROWS; r++) {
+            int cell = r / 9, num = r % 9, row = cell / 9, col = cell % 9, box = row / 3 * 3 + col / 3;
+            int[] columns = {cell, 81 + row * 9 + num, 162 + col * 9 + num, 243 + box * 9 + num};
+            int first = firstNodeOf(r);
+            for (int k = 0; k < 4; k++) {
+                int node = first + k;
+                int c = columns[k] + 1;
+                column[node] = c;
+                rowOf[node] = r;
+                left[node] = first + (k + 3) % 4;
+                right[node] = first + (k + 1) % 4;
+                up[node] = up[c];
+                down[node] = c;
+                down[up[c]] = node;
+                up[c] = node;
+                columnSize[c]++;
+            }
+        }
+    }
+
+    private static int firstNodeOf(int row) {
+        return 1 + COLUMNS + row * 4;
+    }
+
+    @Override
+    public boolean solve(Sudoku sudoku) {
+        if (countSolutions(sudoku, 1) == 0) {
+            return false;
+        }
+        for (int i = 0; i < 81; i++) {
+            if (sudoku.isEmpty(i / 9, i % 9)) {
+                sudoku.fill(i / 9, i % 9, solution[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the sudoku has exactly one solution, the sudoku is left unchanged
+     */
+    public boolean isUnique(Sudoku sudoku) {
+        return countSolutions(sudoku, 2) == 1;
+    }
+
+    /**
+     * Count the solutions of the sudoku, the sudoku is left unchanged.
+     * @param limit stop searching once this many solutions are found
+     * @return the number of the solutions, at most the limit
+     */
+    public int countSolutions(Sudoku sudoku, int limit) {
+        this.limit = limit;
+        solutionCount = 0;
+        if (coverGivens(sudoku)) {
+            search(0);
+        }
+        uncoverGivens();
+        return solutionCount;
+    }
+
+    /**
+     * @return false if the given cells are conflicting
+     */
+    private boolean coverGivens(Sudoku sudoku) {
+        givenColumnCount = 0;
+        for (int i = 0; i < 81; i++) {
+            if (!sudoku.isEmpty(i / 9, i % 9)) {
+                int num = sudoku.get(i / 9, i % 9);
+                solution[i] = (byte) num;
+                int first = firstNodeOf(i * 9 + num - 1);
+                for (int node = first; node < first + 4; node++) {
+                    if (covered[column[node]]) {
+                        return false;
+                    }
+                    cover(column[node]);
+                    givenColumns[givenColumnCount++] = column[node];
+                }
+            }
+        }
+        return true;
+    }
+
+    private void uncoverGivens() {
+        while (givenColumnCount > 0) {
+            uncover(givenColumns[--givenColumnCount]);
+        }
+    }
+
+    private void search(int depth) {
+        if (right[ROOT] == ROOT) {
+            if (solutionCount++ == 0) {
+                for (int k = 0; k < depth; k++) {
+                    int r = rowOf[chosenRows[k]];
+                    solution[r / 9] = (byte) (r % 9 + 1);
+                }
+            }
+            return;
+        }
+        int c = right[ROOT];
+        for (int j = right[c]; j != ROOT; j = right[j]) {
+            if (columnSize[j] < columnSize[c]) {
+                c = j;
+            }
+        }
+        if (columnSize[c] == 0) {
+            return;
+        }
+        cover(c);
+        for (int r = down[c]; r != c && solutionCount < limit; r = down[r]) {
+            chosenRows[depth] = r;
+            for (int j = right[r]; j != r; j = right[j]) {
+                cover(column[j]);
+            }
+            search(depth + 1);
+            for (int j = left[r]; j != r; j = left[j]) {
+                uncover(column[j]);
+            }
+        }
+        uncover(c);
+    }
+
+    private void cover(int c) {
+        covered[c] = true;
+        right[left[c]] = right[c];
+        left[right[c]] = left[c];
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                columnSize[column[j]]--;
+            }
+        }
+    }
+
+    private void uncover(int c) {
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                columnSize[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        right[left[c]] = c;
+        left[right[c]] = c;
+        covered[c] = false;
+    }
+}
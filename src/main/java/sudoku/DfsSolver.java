@@ -0,0 +1,45 @@
+package sudoku;
+
+import metrics.Histogram;
+import metrics.Metrics;
+
+/**
+ * The reference solver, which tries every number over the empty points in the row-major order.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class DfsSolver implements Solver {
+    private static final Histogram NODES = Metrics.histogram("solver.dfs.nodes");
+    private long nodes;  // the numbers tried in the last solve
+
+    @Override
+    public boolean solve(Sudoku sudoku) {
+        int[] points = new int[sudoku.getEmptyCount()];  // the row-major indexes
+        for (int i = 0, k = 0; i < 81; i++) {
+            if (sudoku.isEmpty(i / 9, i % 9)) {
+                points[k++] = i;
+            }
+        }
+        nodes = 0;
+        boolean solved = points.length == 0 || dfsPut(sudoku, points, 0);
+        NODES.record(nodes);
+        return solved;
+    }
+
+    private boolean dfsPut(Sudoku sudoku, int[] points, int pos) {
+        int row = points[pos] / 9, col = points[pos] % 9;
+        for (int num = 1; num <= 9; num++) {
+            nodes++;
+            if (!sudoku.isPutViolating(row, col, num)) {
+                sudoku.fill(row, col, num);
+                if (pos + 1 >= points.length) {
+                    return true;
+                }
+                if (dfsPut(sudoku, points, pos + 1)) {
+                    return true;
+                }
+                sudoku.erase(row, col);
+            }
+        }
+        return false;
+    }
+}
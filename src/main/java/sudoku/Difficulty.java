@@ -0,0 +1,19 @@
+package sudoku;
+
+/**
+ * The difficulty of the generated puzzle, rated by the number of the given cells.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public enum Difficulty {
+    EASY(38), MEDIUM(32), HARD(27), EXPERT(24);
+
+    private final int clues;
+
+    Difficulty(int clues) {
+        this.clues = clues;
+    }
+
+    public int getClues() {
+        return clues;
+    }
+}
@@ -3,29 +3,88 @@ package sudoku;
 import java.util.Scanner;
 
 /**
+ * The blocking prompts of the local game, which ask again in a loop until the input is valid.
+ * The console clients of a game server read the lines from their event loops instead and parse them here,
+ * see {@link p2p.EventQueue}.
  * @author - johnny850807@gmail.com (Waterball)
  */
 public abstract class Inputs {
     private final static Scanner scanner = new Scanner(System.in);
 
     public static String inputName(String msg) {
-        System.out.println(msg);
-        String next = scanner.next();
-        return next.isEmpty() ? inputName(msg) : next;
+        String next;
+        do {
+            System.out.println(msg);
+            next = scanner.next();
+        } while (next.isEmpty());
+        return next;
     }
 
     public static int inputNumInRange(String msg, int floor, int ceil) {
-        System.out.println(msg);
-        try {
-            int next = scanner.nextInt();
-            if (next < floor || next > ceil) {
-                System.err.printf("Please input a number in %d ~ %d\n.", floor, ceil);
-                return inputNumInRange(msg, floor, ceil);
+        while (true) {
+            System.out.println(msg);
+            int next = parseNumInRange(scanner.next(), floor, ceil);
+            if (next >= floor) {
+                return next;
             }
-            return next;
+            System.err.printf("Please input a number in %d ~ %d.\n", floor, ceil);
+        }
+    }
+
+    /**
+     * @return the number, or Integer.MIN_VALUE if it's not a number in floor ~ ceil
+     */
+    public static int parseNumInRange(String token, int floor, int ceil) {
+        try {
+            int num = Integer.parseInt(token);
+            return num < floor || num > ceil ? Integer.MIN_VALUE : num;
         } catch (NumberFormatException ignored) {
-            System.err.printf("Please input a number in %d ~ %d\n.", floor, ceil);
-            return inputNumInRange(msg, floor, ceil);
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Parse the move typed in a line as "row col number", e.g. "0 8 9".
+     * @param move the [row, col, number] of the move, set if parsed
+     * @return false if the line is not the 3 numbers in 0 ~ 8, 0 ~ 8 and 1 ~ 9
+     */
+    public static boolean parseMove(String line, int[] move) {
+        String[] tokens = line.trim().split("\\s+");
+        if (tokens.length != 3) {
+            return false;
+        }
+        move[0] = parseNumInRange(tokens[0], 0, 8);
+        move[1] = parseNumInRange(tokens[1], 0, 8);
+        move[2] = parseNumInRange(tokens[2], 1, 9);
+        return move[0] >= 0 && move[1] >= 0 && move[2] >= 1;
+    }
+
+    /**
+     * Parse the hint command typed in a line as "hint row col", e.g. "hint 0 8".
+     * @param cell the [row, col] of the cell, set if parsed
+     * @return false if the line is not "hint" followed by the 2 numbers in 0 ~ 8
+     */
+    public static boolean parseHint(String line, int[] cell) {
+        String[] tokens = line.trim().split("\\s+");
+        if (tokens.length != 3 || !tokens[0].equalsIgnoreCase("hint")) {
+            return false;
+        }
+        cell[0] = parseNumInRange(tokens[1], 0, 8);
+        cell[1] = parseNumInRange(tokens[2], 0, 8);
+        return cell[0] >= 0 && cell[1] >= 0;
+    }
+
+    /**
+     * Format the candidates of a cell as the numbers separated by spaces, e.g. "1 5 9", see
+     * {@link Sudoku#getCandidates(int, int)}.
+     */
+    public static String formatCandidates(int candidates) {
+        StringBuilder numbers = new StringBuilder();
+        for (int num = 1; num <= 9; num++) {
+            if ((candidates & (1 << num)) != 0) {
+                numbers.append(num).append(' ');
+            }
         }
+        return numbers.length() == 0 ? "none" : numbers.toString().trim();
     }
 }
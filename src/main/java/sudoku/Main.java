@@ -5,6 +5,10 @@ package sudoku;
  */
 public class Main {
     public static Sudoku sudoku = new Sudoku();
+    private static final char[] board = new char[Sudoku.RENDERED_LENGTH];  // the reusable render buffer
+    private static final byte[] startBoard = new byte[81];
+    private static final byte[] move = new byte[3];
+    private static byte[] solution;  // of the start board, found on the first hint without a forced move or the give-up
 
     public static void main(String[] args) {
         System.out.println("Welcome to the sudoku.Sudoku game.");
@@ -13,22 +17,60 @@ public class Main {
         System.out.println("\nHello, " + name + ", let's start a new puzzle.");
         System.out.println("\nGenerating puzzle ...");
         sudoku.generateSolvablePuzzle();
+        sudoku.snapshot(startBoard);
         System.out.println("The puzzle has been generated, the game started!\n");
 
         while (!sudoku.isSolved()) {
-            System.out.println(sudoku);
-            int choice = Inputs.inputNumInRange("\n[1] Fill a number [2] See the answer: ", 1 , 2);
+            printBoard();
+            int choice = Inputs.inputNumInRange("\n[1] Fill a number [2] See the answer [3] Get a hint: ", 1 , 3);
             if (choice == 1) {
                 fillInNumber();
+            } else if (choice == 3) {
+                hint();
             } else if (choice == 2) {
-                sudoku.generateAnswer();
+                if (findSolution()) {
+                    sudoku.restore(solution);  // the start board's answer, even after the wrong moves
+                }
                 System.out.println("You have given up!\nLet's see the answer below.\n");
-                System.out.println(sudoku);
+                printBoard();
                 break;
             }
         }
     }
 
+    private static void hint() {
+        if (sudoku.findForcedMove(move)) {
+            System.out.printf("Hint: the number %d is forced at (%d, %d).\n\n", move[2], move[0], move[1]);
+            return;
+        }
+        int row = Inputs.inputNumInRange("No number is forced, see the candidates of the row index: ", 0, 8);
+        int col = Inputs.inputNumInRange("Column index: ", 0, 8);
+        System.out.printf("The candidates at (%d, %d): %s\n", row, col,
+                Inputs.formatCandidates(sudoku.getCandidates(row, col)));
+        if (sudoku.isEmpty(row, col) && findSolution()) {
+            System.out.printf("The answer is %d.\n", solution[row * 9 + col]);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Solve the start board once through the {@link SolutionCache}, so that the answers don't change with the moves,
+     * even the wrong ones, and the later hints and the give-up never solve.
+     * @return false if the start board has no solution
+     */
+    private static boolean findSolution() {
+        if (solution == null) {
+            Sudoku start = new Sudoku();
+            start.restore(startBoard);
+            byte[] solution = new byte[81];
+            if (!SolutionCache.getDefault().getSolution(start, solution)) {
+                return false;
+            }
+            Main.solution = solution;
+        }
+        return true;
+    }
+
     private static void fillInNumber() {
         do {
             try {
@@ -40,9 +82,13 @@ public class Main {
                 break;
             } catch (Sudoku.InvalidException err) {
                 System.err.println(err.getMessage() + "\n");
-                System.out.println(sudoku);
+                printBoard();
             }
         } while (true);
     }
-}
 
+    private static void printBoard() {
+        sudoku.render(board);
+        System.out.println(board);
+    }
+}
@@ -0,0 +1,217 @@
+package sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The puzzle files of fixed-width records, so that the i-th board is found at i * the record size:
+ * {@link Format#PACKED} is the 41-byte form of {@link Sudoku#pack(byte[], int)}, and {@link Format#TEXT} is the
+ * 81-char line of {@link Sudoku#setLine(CharSequence)} ended by '\n'.
+ * The reader maps the file into memory and decodes the records right from the mapping into a sudoku,
+ * the writer encodes the boards into a reusable buffer written by a single channel write when full.
+ * Neither the reader nor the writer is thread-safe, the threads should open their own readers of the same file.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class PuzzleFile {
+    private final static long SEGMENT_SIZE = 1L << 30;  // a mapping is at most 2 GB, so the large files are mapped in segments
+
+    public enum Format {
+        PACKED(Sudoku.PACKED_SIZE), TEXT(82);
+
+        private final int recordSize;
+
+        Format(int recordSize) {
+            this.recordSize = recordSize;
+        }
+
+        public int getRecordSize() {
+            return recordSize;
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final Format format;
+        private final MappedByteBuffer[] segments;
+        private final long recordsPerSegment;
+        private final long size;
+        private final MappedLine line = new MappedLine();
+        private long position;
+
+        /**
+         * @throws IOException if the file's length is not a multiple of the record size, the final '\n' of a text file
+         * can be omitted
+         */
+        public Reader(Path path, Format format) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.format = format;
+            long length = channel.size();
+            int recordSize = format.recordSize;
+            long records = format == Format.TEXT && length % recordSize == recordSize - 1 ?
+                    length / recordSize + 1 : length / recordSize;  // the last line can be without '\n'
+            if (length % recordSize != 0 && records == length / recordSize) {
+                channel.close();
+                throw new IOException(String.format("The file's length %d is not a multiple of %d.", length, recordSize));
+            }
+            this.size = records;
+            this.recordsPerSegment = SEGMENT_SIZE / recordSize;
+            this.segments = new MappedByteBuffer[(int) ((size + recordsPerSegment - 1) / recordsPerSegment)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * recordsPerSegment * recordSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(recordsPerSegment * recordSize, length - start));
+            }
+        }
+
+        /**
+         * @return the number of the boards
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Set the sudoku to the index-th board, without allocation.
+         * @throws Sudoku.BoardInvalidException if the board is invalid, and then the sudoku is left unchanged
+         */
+        public void read(long index, Sudoku sudoku) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of the " + size + " boards.");
+            }
+            ByteBuffer segment = segments[(int) (index / recordsPerSegment)];
+            int offset = (int) (index % recordsPerSegment) * format.recordSize;
+            if (format == Format.PACKED) {
+                sudoku.unpack(segment, offset);
+            } else {
+                sudoku.setLine(line.of(segment, offset));
+            }
+        }
+
+        /**
+         * Set the sudoku to the next board from the current position, which starts from 0.
+         * @return false if all the boards have been read
+         * @throws Sudoku.BoardInvalidException if the board is invalid, and then the position stays at it,
+         * so that its index is {@link #getPosition()} and it's skipped by seeking to the next
+         */
+        public boolean next(Sudoku sudoku) {
+            if (position >= size) {
+                return false;
+            }
+            read(position, sudoku);
+            position++;
+            return true;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public void seek(long position) {
+            this.position = position;
+        }
+
+        /**
+         * Close the channel, the mappings are released once garbage collected.
+         */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * A line of 81 ASCII chars in a mapped buffer, moved from record to record instead of decoded into a String.
+     */
+    private static class MappedLine implements CharSequence {
+        private ByteBuffer buffer;
+        private int offset;
+
+        MappedLine of(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return 81;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[81];
+            for (int i = 0; i < 81; i++) {
+                chars[i] = charAt(i);
+            }
+            return new String(chars);
+        }
+    }
+
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final Format format;
+        private final ByteBuffer buffer;
+
+        /**
+         * Create the file, or truncate it if exists.
+         */
+        public Writer(Path path, Format format) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.format = format;
+            this.buffer = ByteBuffer.allocateDirect(format.recordSize * 16384);
+        }
+
+        /**
+         * Append the board, the puzzle's given cells are not stored.
+         */
+        public void write(Sudoku sudoku) throws IOException {
+            if (buffer.remaining() < format.recordSize) {
+                flush();
+            }
+            int offset = buffer.position();
+            if (format == Format.PACKED) {
+                sudoku.pack(buffer, offset);
+            } else {
+                for (int i = 0; i < 81; i++) {
+                    byte num = sudoku.get(i / 9, i % 9);
+                    buffer.put(offset + i, num == Sudoku.EMPTY ? (byte) '.' : (byte) ('0' + num));
+                }
+                buffer.put(offset + 81, (byte) '\n');
+            }
+            buffer.position(offset + format.recordSize);
+        }
+
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package sudoku;
+
+import metrics.Histogram;
+import metrics.Metrics;
+
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The generator fills a random full grid, and then removes the clues in a random order as long as
+ * the puzzle still has exactly one solution. Each removal costs one uniqueness check, so there are
+ * at most 81 checks and the generation time is bounded, and the removal stops early once the
+ * latency budget is used up.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class PuzzleGenerator {
+    public final static long DEFAULT_BUDGET_MILLIS = 100;
+    private final static Histogram GENERATION_NANOS = Metrics.histogram("generation.nanos");
+    private final static LongAdder UNIQUENESS_CHECKS = Metrics.counter("generation.uniqueness_checks");
+    private final static LongAdder CLUES_RESTORED = Metrics.counter("generation.clues_restored");  // the removals retried
+    private final Random random;
+    private final DancingLinksSolver uniquenessChecker = new DancingLinksSolver();
+    private final int[] order = new int[81];
+    private final int[] numbers = new int[9];
+
+    public PuzzleGenerator() {
+        this(new Random());
+    }
+
+    public PuzzleGenerator(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * @param sudoku the sudoku with an empty board to fill the puzzle in
+     * @param targetClues the number of the given cells to reach
+     * @param budgetMillis the time limit of removing the clues, the puzzle may have more clues than the target if exceeded
+     */
+    public void generate(Sudoku sudoku, int targetClues, long budgetMillis) {
+        long start = System.nanoTime();
+        long deadline = start + budgetMillis * 1_000_000;
+        fillRandomGrid(sudoku);
+        shuffleCells();
+
+        int clues = 81, i;
+        for (i = 0; i < 81 && clues > targetClues && System.nanoTime() < deadline; i++) {
+            int row = order[i] / 9, col = order[i] % 9;
+            byte num = sudoku.get(row, col);
+            sudoku.erase(row, col);
+            if (uniquenessChecker.isUnique(sudoku)) {
+                clues--;
+            } else {
+                sudoku.fill(row, col, num);
+            }
+        }
+        UNIQUENESS_CHECKS.add(i);
+        CLUES_RESTORED.add(i - (81 - clues));
+        GENERATION_NANOS.recordSince(start);
+    }
+
+    private void fillRandomGrid(Sudoku sudoku) {
+        for (int i = 0; i < 9; i++) {
+            numbers[i] = i + 1;
+        }
+        shuffle(numbers);
+        for (int col = 0; col < 9; col++) {  // any permutation is a valid first row
+            sudoku.fill(0, col, numbers[col]);
+        }
+        if (!new ConstraintPropagationSolver(random).solve(sudoku)) {
+            throw new IllegalStateException("A grid with a valid first row must be solvable.");
+        }
+    }
+
+    private void shuffleCells() {
+        for (int i = 0; i < 81; i++) {
+            order[i] = i;
+        }
+        shuffle(order);
+    }
+
+    private void shuffle(int[] array) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package sudoku;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the generated puzzles of every difficulty ready, so that a game can start without waiting the generation.
+ * Once the puzzles of a difficulty drop to the low watermark, a background worker refills them up to the high watermark.
+ * If the pool runs out, the puzzle is generated on the caller's thread and counted as a miss.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class PuzzlePool implements Closeable {
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final ExecutorService workers;
+    private final List<Queue<Sudoku>> puzzles = new ArrayList<>();  // by the difficulty's ordinal
+    private final AtomicInteger[] sizes;
+    private final AtomicBoolean[] refilling;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PuzzlePool(int lowWatermark, int highWatermark, int workerThreads) {
+        if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+            throw new IllegalArgumentException("The watermarks should satisfy 0 <= low < high.");
+        }
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "puzzle-pool-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int difficulties = Difficulty.values().length;
+        sizes = new AtomicInteger[difficulties];
+        refilling = new AtomicBoolean[difficulties];
+        for (Difficulty difficulty : Difficulty.values()) {
+            puzzles.add(new ConcurrentLinkedQueue<>());
+            sizes[difficulty.ordinal()] = new AtomicInteger();
+            refilling[difficulty.ordinal()] = new AtomicBoolean();
+        }
+        for (Difficulty difficulty : Difficulty.values()) {  // once the list is complete, as the workers read it
+            refill(difficulty);
+        }
+    }
+
+    /**
+     * @return a puzzle owned by the caller
+     */
+    public Sudoku take(Difficulty difficulty) {
+        Sudoku sudoku = puzzles.get(difficulty.ordinal()).poll();
+        if (sudoku == null) {
+            misses.increment();
+            sudoku = generate(difficulty);
+        } else {
+            hits.increment();
+            sizes[difficulty.ordinal()].decrementAndGet();
+        }
+        if (sizes[difficulty.ordinal()].get() <= lowWatermark) {
+            refill(difficulty);
+        }
+        return sudoku;
+    }
+
+    private void refill(Difficulty difficulty) {
+        AtomicBoolean refilling = this.refilling[difficulty.ordinal()];
+        if (!workers.isShutdown() && refilling.compareAndSet(false, true)) {
+            workers.execute(() -> {
+                try {
+                    AtomicInteger size = sizes[difficulty.ordinal()];
+                    while (size.get() < highWatermark && !workers.isShutdown()) {
+                        puzzles.get(difficulty.ordinal()).offer(generate(difficulty));
+                        size.incrementAndGet();
+                    }
+                } finally {
+                    refilling.set(false);
+                }
+                // the puzzles may have been taken after the loop ends but before the flag is reset
+                if (sizes[difficulty.ordinal()].get() <= lowWatermark) {
+                    refill(difficulty);
+                }
+            });
+        }
+    }
+
+    private static Sudoku generate(Difficulty difficulty) {
+        Sudoku sudoku = new Sudoku();
+        sudoku.generateUniquePuzzle(difficulty);
+        return sudoku;
+    }
+
+    public int size(Difficulty difficulty) {
+        return sizes[difficulty.ordinal()].get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Stop refilling and wait for the running generation to finish, the pooled puzzles can still be taken.
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
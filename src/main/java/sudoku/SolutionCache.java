@@ -0,0 +1,222 @@
+package sudoku;
+
+import metrics.Metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache the solutions by the canonical form of the board, so that a recurring puzzle, or any of its equivalent
+ * variants, is solved only once. The canonical form is the lexicographically smallest board among the 72 variants
+ * of the transposition, the 6 permutations of the bands (the rows of boxes) and the 6 permutations of the stacks
+ * (the columns of boxes), each with its numbers relabeled in the order of their first appearance.
+ * The solution is stored in the canonical form, and mapped back through the variant's transform on a hit.
+ * At most the capacity of the boards are kept, the least recently used one is evicted first.
+ * The cache is thread-safe, the misses are solved outside the lock.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public class SolutionCache implements Solver {
+    public final static int DEFAULT_CAPACITY = 4096;
+    private final static int TRANSFORMS = 72;
+    private final static int[][] SOURCES = new int[TRANSFORMS][81];  // the canonical cell i is the source cell SOURCES[t][i]
+    private final static byte[] NO_SOLUTION = new byte[0];
+    private final static SolutionCache DEFAULT = new SolutionCache(DEFAULT_CAPACITY);
+    private final static LongAdder HITS = Metrics.counter("solution_cache.hits");
+    private final static LongAdder MISSES = Metrics.counter("solution_cache.misses");
+    private final Map<String, byte[]> solutions;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    static {
+        int[][] permutations = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+        int t = 0;
+        for (int transpose = 0; transpose < 2; transpose++) {
+            for (int[] bands : permutations) {
+                for (int[] stacks : permutations) {
+                    for (int i = 0; i < 81; i++) {
+                        int row = bands[i / 9 / 3] * 3 + i / 9 % 3;
+                        int col = stacks[i % 9 / 3] * 3 + i % 9 % 3;
+                        SOURCES[t][i] = transpose == 0 ? row * 9 + col : col * 9 + row;
+                    }
+                    t++;
+                }
+            }
+        }
+    }
+
+    public SolutionCache(int capacity) {
+        this.solutions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the process-wide cache of {@link #DEFAULT_CAPACITY} boards, e.g. for {@link Sudoku#generateAnswer()}
+     */
+    public static SolutionCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * The board's canonical form and the transform from it.
+     */
+    private static class Canonical {
+        final byte[] cells = new byte[81];  // 0 for the empty cells, and the labels 1 ~ 9
+        final byte[] numbers = new byte[10];  // the number of every label
+        int transform;
+
+        String key() {
+            return new String(cells, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private static Canonical canonicalize(Sudoku sudoku) {
+        Canonical best = new Canonical();
+        byte[] candidate = new byte[81];
+        byte[] labels = new byte[10];
+        boolean found = false;
+        for (int t = 0; t < TRANSFORMS; t++) {
+            Arrays.fill(labels, (byte) 0);
+            byte next = 1;
+            int order = found ? 0 : -1;  // the comparison with the best so far, decided by the first different cell
+            int i;
+            for (i = 0; i < 81; i++) {
+                byte num = sudoku.get(SOURCES[t][i] / 9, SOURCES[t][i] % 9);
+                byte label = 0;
+                if (num != Sudoku.EMPTY) {
+                    if (labels[num] == 0) {
+                        labels[num] = next++;
+                    }
+                    label = labels[num];
+                }
+                candidate[i] = label;
+                if (order == 0 && label != best.cells[i]) {
+                    order = label < best.cells[i] ? -1 : 1;
+                    if (order > 0) {
+                        break;  // larger than the best
+                    }
+                }
+            }
+            if (order < 0) {
+                found = true;
+                best.transform = t;
+                System.arraycopy(candidate, 0, best.cells, 0, 81);
+                Arrays.fill(best.numbers, (byte) 0);
+                for (int num = 1; num <= 9; num++) {
+                    if (labels[num] != 0) {
+                        best.numbers[labels[num]] = (byte) num;
+                    }
+                }
+            }
+        }
+        assignMissingNumbers(best.numbers);
+        return best;
+    }
+
+    /**
+     * Give the numbers not on the board the remaining labels in the ascending order.
+     */
+    private static void assignMissingNumbers(byte[] numbers) {
+        boolean[] labeled = new boolean[10];
+        for (int label = 1; label <= 9; label++) {
+            labeled[numbers[label]] = numbers[label] != 0;
+        }
+        int num = 1;
+        for (int label = 1; label <= 9; label++) {
+            if (numbers[label] == 0) {
+                while (labeled[num]) {
+                    num++;
+                }
+                numbers[label] = (byte) num++;
+            }
+        }
+    }
+
+    /**
+     * Find the solution of the board without changing it, from the cache or else by solving a copy.
+     * @param solution the 81 cells of the solution in the row-major order, set if found
+     * @return false if there is no solution
+     */
+    public boolean getSolution(Sudoku sudoku, byte[] solution) {
+        Canonical canonical = canonicalize(sudoku);
+        String key = canonical.key();
+        byte[] canonicalSolution;
+        synchronized (solutions) {
+            canonicalSolution = solutions.get(key);
+        }
+        if (canonicalSolution == null) {
+            misses.increment();
+            MISSES.increment();
+            canonicalSolution = solve(sudoku, canonical);
+            synchronized (solutions) {
+                solutions.put(key, canonicalSolution);
+            }
+        } else {
+            hits.increment();
+            HITS.increment();
+        }
+        if (canonicalSolution == NO_SOLUTION) {
+            return false;
+        }
+        int[] sources = SOURCES[canonical.transform];
+        for (int i = 0; i < 81; i++) {
+            solution[sources[i]] = canonical.numbers[canonicalSolution[i]];
+        }
+        return true;
+    }
+
+    private static byte[] solve(Sudoku sudoku, Canonical canonical) {
+        Sudoku copy = new Sudoku();
+        sudoku.copyTo(copy);
+        if (!new ConstraintPropagationSolver().solve(copy)) {
+            return NO_SOLUTION;
+        }
+        byte[] labels = new byte[10];
+        for (int label = 1; label <= 9; label++) {
+            labels[canonical.numbers[label]] = (byte) label;
+        }
+        byte[] canonicalSolution = new byte[81];
+        int[] sources = SOURCES[canonical.transform];
+        for (int i = 0; i < 81; i++) {
+            canonicalSolution[i] = labels[copy.get(sources[i] / 9, sources[i] % 9)];
+        }
+        return canonicalSolution;
+    }
+
+    /**
+     * Solve the sudoku in place from the cached solution.
+     */
+    @Override
+    public boolean solve(Sudoku sudoku) {
+        byte[] solution = new byte[81];
+        if (!getSolution(sudoku, solution)) {
+            return false;
+        }
+        for (int i = 0; i < 81; i++) {
+            if (sudoku.isEmpty(i / 9, i % 9)) {
+                sudoku.fill(i / 9, i % 9, solution[i]);
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        synchronized (solutions) {
+            return solutions.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,14 @@
+package sudoku;
+
+/**
+ * A strategy solving the sudoku in place, the puzzle is left unchanged if there is no solution.
+ * Solvers may keep internal buffers across calls, so they are not thread-safe.
+ * @author - johnny850807@gmail.com (Waterball)
+ */
+public interface Solver {
+
+    /**
+     * @return true if the sudoku has been solved, otherwise false if there is no solution
+     */
+    boolean solve(Sudoku sudoku);
+}
@@ -1,10 +1,8 @@
 package sudoku;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * @author - johnny850807@gmail.com (Waterball)
@@ -12,146 +10,502 @@ import java.util.stream.IntStream;
 public class Sudoku implements Serializable {
     private static final long serialVersionUID = 1314520L;
     public final static byte EMPTY = -128;
-    private byte[][] board = new byte[9][9];
-    private List<Point> puzzledPoints;
+    public final static int PACKED_SIZE = 41;  // 81 cells in 4 bits each
+    public final static int GIVENS_SIZE = 11;  // 81 cells in 1 bit each
+    public final static int RENDERED_LENGTH = 11 * 22 - 1;  // the 9 rows and 2 split lines of 21 chars and '\n'
+    public final static int ROW_COMPLETED = 1, COL_COMPLETED = 2, BOX_COMPLETED = 4;  // see getCompletedUnits
+    private final static short ALL_NUMBERS = 0x3FE;
+    private final byte[] cells = new byte[81];  // in the row-major order
+
+    // the puzzle's given cells, bit i of the low word is the cell i, and bit i of the high word is the cell 64 + i
+    private long givensLow, givensHigh;
+
+    // occupancy masks, bit n is set if the number n has been put in the unit
+    private final short[] rowMasks = new short[9];
+    private final short[] colMasks = new short[9];
+    private final short[] boxMasks = new short[9];
+    // the units whose masks hold all of 1 ~ 9, a put never repeats a number in a unit, so such a unit's 9 cells are
+    // filled in correctly, and the board is solved once all the 27 units are completed
+    private int completedUnits;
+
+    // the empty cells as a sparse set: the first emptyCount entries of emptyCells are the empty cells' indexes,
+    // and emptyPositions[i] is where the cell i is in emptyCells, so that a cell is added or removed in O(1)
+    private final byte[] emptyCells = new byte[81];
+    private final byte[] emptyPositions = new byte[81];
+    private int emptyCount;
 
     public Sudoku() {
         fillEmptyBoard();
     }
 
     private void fillEmptyBoard() {
-        for (byte[] bytes : board) {
-            Arrays.fill(bytes, EMPTY);
+        Arrays.fill(cells, EMPTY);
+        clearMasks();
+        indexEmptyCells();
+    }
+
+    private void indexEmptyCells() {
+        emptyCount = 0;
+        for (int i = 0; i < 81; i++) {
+            if (cells[i] == EMPTY) {
+                emptyPositions[i] = (byte) emptyCount;
+                emptyCells[emptyCount++] = (byte) i;
+            }
+        }
+    }
+
+    private void removeEmptyCell(int i) {
+        int last = emptyCells[--emptyCount];  // move the last one into the removed one's position
+        emptyCells[emptyPositions[i]] = (byte) last;
+        emptyPositions[last] = emptyPositions[i];
+    }
+
+    private void addEmptyCell(int i) {
+        emptyPositions[i] = (byte) emptyCount;
+        emptyCells[emptyCount++] = (byte) i;
+    }
+
+    private void clearMasks() {
+        Arrays.fill(rowMasks, (short) 0);
+        Arrays.fill(colMasks, (short) 0);
+        Arrays.fill(boxMasks, (short) 0);
+        completedUnits = 0;
+    }
+
+    private static int box(int row, int col) {
+        return row / 3 * 3 + col / 3;
+    }
+
+    void fill(int row, int col, int num) {
+        int i = row * 9 + col;
+        if (cells[i] == EMPTY) {
+            removeEmptyCell(i);
+        }
+        cells[i] = (byte) num;
+        mark(row, col, num);
+    }
+
+    private void mark(int row, int col, int num) {
+        int bit = 1 << num;
+        completedUnits += mark(rowMasks, row, bit) + mark(colMasks, col, bit) + mark(boxMasks, box(row, col), bit);
+    }
+
+    /**
+     * @return 1 if the unit is completed by the number, or else 0
+     */
+    private static int mark(short[] masks, int unit, int bit) {
+        int mask = masks[unit];
+        masks[unit] = (short) (mask | bit);
+        return mask != ALL_NUMBERS && (mask | bit) == ALL_NUMBERS ? 1 : 0;
+    }
+
+    void erase(int row, int col) {
+        int i = row * 9 + col;
+        if (cells[i] != EMPTY) {
+            int bit = ~(1 << cells[i]);
+            completedUnits -= erase(rowMasks, row, bit) + erase(colMasks, col, bit) + erase(boxMasks, box(row, col), bit);
+            cells[i] = EMPTY;
+            addEmptyCell(i);
         }
     }
 
+    /**
+     * @return 1 if the unit was completed before the number is erased, or else 0
+     */
+    private static int erase(short[] masks, int unit, int bit) {
+        int mask = masks[unit];
+        masks[unit] = (short) (mask & bit);
+        return mask == ALL_NUMBERS ? 1 : 0;
+    }
+
     public byte get(int row, int col) {
-        return board[row][col];
+        return cells[row * 9 + col];
     }
 
     public void generateSolvablePuzzle() {
-        Random random = new Random();
-        boolean canPut;
-        boolean solvable;
-
-        do {
-            fillEmptyBoard();
-            int randomPointsOfPlacement = random.nextInt(25) + 6;
-            puzzledPoints = generateRandomDistinctPoints(randomPointsOfPlacement);
-            canPut = dfsPutRandomly(puzzledPoints, 0);
-            List<Point> emptyPoints = getEmptyPoints();
-            solvable = dfsPut(emptyPoints, 0);  // try dfs over the puzzle
-            if (solvable) {
-                emptyPoints.forEach(p -> board[p.row][p.col] = EMPTY);  // rollback to be unsolved if it's solvable
+        generateUniquePuzzle(Difficulty.MEDIUM);
+    }
+
+    /**
+     * Generate a puzzle which has exactly one solution, see {@link PuzzleGenerator}.
+     */
+    public void generateUniquePuzzle(Difficulty difficulty) {
+        generateUniquePuzzle(difficulty.getClues(), PuzzleGenerator.DEFAULT_BUDGET_MILLIS);
+    }
+
+    /**
+     * Generate a puzzle which has exactly one solution, see {@link PuzzleGenerator}.
+     * @param targetClues the number of the given cells to reach
+     * @param budgetMillis the time limit of removing the clues, the puzzle may have more clues than the target if exceeded
+     */
+    public void generateUniquePuzzle(int targetClues, long budgetMillis) {
+        fillEmptyBoard();
+        givensLow = givensHigh = 0;
+        new PuzzleGenerator().generate(this, targetClues, budgetMillis);
+        for (int i = 0; i < 81; i++) {
+            if (cells[i] != EMPTY) {
+                setGiven(i);
             }
-        } while (!canPut || !solvable);
+        }
+    }
+
+    private void setGiven(int i) {
+        if (i < 64) {
+            givensLow |= 1L << i;
+        } else {
+            givensHigh |= 1L << (i - 64);
+        }
     }
 
-    @SuppressWarnings("ComparatorMethodParameterNotUsed")
-    private List<Point> generateRandomDistinctPoints(int numPoints) {
-        List<Integer> indices = IntStream.range(0, 81).boxed().collect(Collectors.toList());
-        Collections.shuffle(indices);
-        return indices.stream()
-                .map(index -> new Point(index / 9, index % 9))
-                .limit(numPoints)
-                .collect(Collectors.toList());
+    /**
+     * @return true if the cell is given by the puzzle, which can not be changed by the players
+     */
+    public boolean isGiven(int row, int col) {
+        int i = row * 9 + col;
+        return i < 64 ? (givensLow >>> i & 1) != 0 : (givensHigh >>> (i - 64) & 1) != 0;
     }
 
-    public void setBoard(byte[][] board) {
-        byte[][] oldBoard = this.board;
-        this.board = board;
-        if (!isBoardValid()) {
-            this.board = oldBoard;
+    /**
+     * Pack the given cells' mask into {@link #GIVENS_SIZE} bytes from the offset, bit i % 8 of the byte i / 8 is the cell i.
+     */
+    public void packGivens(byte[] packed, int offset) {
+        for (int b = 0; b < GIVENS_SIZE; b++) {
+            packed[offset + b] = (byte) (b < 8 ? givensLow >>> (b * 8) : givensHigh >>> ((b - 8) * 8));
+        }
+    }
+
+    /**
+     * Set the given cells to the mask packed by {@link #packGivens(byte[], int)}.
+     * @throws BoardInvalidException if any given cell is empty, and then the given cells are left unchanged
+     */
+    public void unpackGivens(byte[] packed, int offset) {
+        long low = 0, high = 0;
+        for (int b = 0; b < GIVENS_SIZE; b++) {
+            long bits = packed[offset + b] & 0xFFL;
+            if (b < 8) {
+                low |= bits << (b * 8);
+            } else {
+                high |= bits << ((b - 8) * 8);
+            }
+        }
+        if ((high & -1L << 17) != 0) {
             throw new BoardInvalidException();
         }
+        for (int i = 0; i < 81; i++) {
+            boolean given = i < 64 ? (low >>> i & 1) != 0 : (high >>> (i - 64) & 1) != 0;
+            if (given && cells[i] == EMPTY) {
+                throw new BoardInvalidException();
+            }
+        }
+        givensLow = low;
+        givensHigh = high;
     }
 
-    private boolean isBoardValid() {
+    public void setBoard(byte[][] board) {
         if (board.length != 9) {
-            return false;
+            throw new BoardInvalidException();
         }
-        for (int i = 0; i < board.length; i++) {
+        byte[] cells = new byte[81];
+        for (int i = 0; i < 9; i++) {
             if (board[i].length != 9) {
-                return false;
+                throw new BoardInvalidException();
+            }
+            System.arraycopy(board[i], 0, cells, i * 9, 9);
+        }
+        restore(cells);
+    }
+
+    /**
+     * Copy the 81 cells in the row-major order into the snapshot, without allocation.
+     */
+    public void snapshot(byte[] snapshot) {
+        System.arraycopy(cells, 0, snapshot, 0, 81);
+    }
+
+    /**
+     * Set the board to the 81 cells in the row-major order, e.g. taken by {@link #snapshot(byte[])}, without allocation.
+     * The given cells are cleared, as they are the previous board's, see {@link #unpackGivens(byte[], int)}.
+     * @throws BoardInvalidException if any cell is violating, and then the board is left unchanged
+     */
+    public void restore(byte[] snapshot) {
+        clearMasks();
+        for (int i = 0; i < 81; i++) {
+            if (snapshot[i] != EMPTY) {
+                markOrRollback(i, snapshot[i]);
+            }
+        }
+        System.arraycopy(snapshot, 0, cells, 0, 81);
+        indexEmptyCells();
+        givensLow = givensHigh = 0;
+    }
+
+    /**
+     * Copy the board and the puzzle's given cells into the target, without allocation.
+     */
+    public void copyTo(Sudoku target) {
+        System.arraycopy(cells, 0, target.cells, 0, 81);
+        System.arraycopy(rowMasks, 0, target.rowMasks, 0, 9);
+        System.arraycopy(colMasks, 0, target.colMasks, 0, 9);
+        System.arraycopy(boxMasks, 0, target.boxMasks, 0, 9);
+        target.completedUnits = completedUnits;
+        System.arraycopy(emptyCells, 0, target.emptyCells, 0, 81);
+        System.arraycopy(emptyPositions, 0, target.emptyPositions, 0, 81);
+        target.emptyCount = emptyCount;
+        target.givensLow = givensLow;
+        target.givensHigh = givensHigh;
+    }
+
+    /**
+     * Pack the board into {@link #PACKED_SIZE} bytes from the offset, every cell is a nibble (0 if empty),
+     * the cell of an even index is in the low nibble.
+     */
+    public void pack(byte[] packed, int offset) {
+        for (int i = 0; i < 81; i += 2) {
+            int low = cells[i] == EMPTY ? 0 : cells[i];
+            int high = i + 1 == 81 || cells[i + 1] == EMPTY ? 0 : cells[i + 1];
+            packed[offset + i / 2] = (byte) (high << 4 | low);
+        }
+    }
+
+    /**
+     * Set the board to the one packed by {@link #pack(byte[], int)}, without allocation.
+     * The given cells are cleared, see {@link #unpackGivens(byte[], int)}.
+     * @throws BoardInvalidException if any cell is violating, and then the board is left unchanged
+     */
+    public void unpack(byte[] packed, int offset) {
+        clearMasks();
+        for (int i = 0; i < 81; i++) {
+            int num = packed[offset + i / 2] >> (i % 2 * 4) & 0xF;
+            if (num != 0) {
+                markOrRollback(i, num);
+            }
+        }
+        for (int i = 0; i < 81; i++) {
+            int num = packed[offset + i / 2] >> (i % 2 * 4) & 0xF;
+            cells[i] = num == 0 ? EMPTY : (byte) num;
+        }
+        indexEmptyCells();
+        givensLow = givensHigh = 0;
+    }
+
+    /**
+     * Pack the board into the buffer at the absolute offset, see {@link #pack(byte[], int)}.
+     */
+    public void pack(ByteBuffer packed, int offset) {
+        for (int i = 0; i < 81; i += 2) {
+            int low = cells[i] == EMPTY ? 0 : cells[i];
+            int high = i + 1 == 81 || cells[i + 1] == EMPTY ? 0 : cells[i + 1];
+            packed.put(offset + i / 2, (byte) (high << 4 | low));
+        }
+    }
+
+    /**
+     * Set the board to the one packed in the buffer at the absolute offset, e.g. a mapped file, see {@link #unpack(byte[], int)}.
+     */
+    public void unpack(ByteBuffer packed, int offset) {
+        clearMasks();
+        for (int i = 0; i < 81; i++) {
+            int num = packed.get(offset + i / 2) >> (i % 2 * 4) & 0xF;
+            if (num != 0) {
+                markOrRollback(i, num);
             }
-            for (int j = 0; j < board[i].length; j++) {
-                if (board[i][j] != EMPTY) {
-                    int num = board[i][j];
-                    board[i][j] = EMPTY;  // try re-put every cell to validate the whole board
-                    if (isPutViolating(i, j, num)) {
-                        return false;
-                    }
-                    board[i][j] = (byte) num;
+        }
+        for (int i = 0; i < 81; i++) {
+            int num = packed.get(offset + i / 2) >> (i % 2 * 4) & 0xF;
+            cells[i] = num == 0 ? EMPTY : (byte) num;
+        }
+        indexEmptyCells();
+        givensLow = givensHigh = 0;
+    }
+
+    /**
+     * Set the board to the 81-char line in the row-major order, without allocation.
+     * '1' ~ '9' are the numbers, and '.' or '0' is an empty cell. The given cells are cleared.
+     * @throws BoardInvalidException if the line is malformed or any cell is violating, and then the board is left unchanged
+     */
+    public void setLine(CharSequence line) {
+        if (line.length() != 81) {
+            throw new BoardInvalidException();
+        }
+        clearMasks();
+        for (int i = 0; i < 81; i++) {
+            char c = line.charAt(i);
+            if (c != '.' && c != '0') {
+                markOrRollback(i, c >= '1' && c <= '9' ? c - '0' : -1);
+            }
+        }
+        for (int i = 0; i < 81; i++) {
+            char c = line.charAt(i);
+            cells[i] = c == '.' || c == '0' ? EMPTY : (byte) (c - '0');
+        }
+        indexEmptyCells();
+        givensLow = givensHigh = 0;
+    }
+
+    /**
+     * @return the board in the 81-char line format of {@link #setLine(CharSequence)}, '.' is an empty cell
+     */
+    public String toLine() {
+        char[] line = new char[81];
+        for (int i = 0; i < 81; i++) {
+            line[i] = cells[i] == EMPTY ? '.' : (char) ('0' + cells[i]);
+        }
+        return new String(line);
+    }
+
+    /**
+     * Mark the number of the incoming cell in the masks being rebuilt, or rebuild the masks from the current cells
+     * and throw if the number is violating.
+     */
+    private void markOrRollback(int i, int num) {
+        if (num < 1 || num > 9 || isPutViolating(i / 9, i % 9, num)) {
+            clearMasks();
+            for (int j = 0; j < 81; j++) {
+                if (cells[j] != EMPTY) {
+                    mark(j / 9, j % 9, cells[j]);
                 }
             }
+            throw new BoardInvalidException();
         }
-        return true;
+        mark(i / 9, i % 9, num);
     }
 
     public void put(int row, int col, int num) throws InvalidException {
         if (num != EMPTY) {
             validatePut(row, col, num);
-            board[row][col] = (byte) num;
+            fill(row, col, num);
         }
     }
 
     private void validatePut(int row, int col, int num) throws InvalidException {
-        if (num < 1 || num > 9) {
-            throw new InvalidException(row, col, num);
-        } else if (puzzledPoints != null &&
-                puzzledPoints.stream().anyMatch(p -> p.row == row && p.col == col)) {
+        if (!isValidPut(row, col, num)) {
             throw new InvalidException(row, col, num);
-        } else {
-            byte oldValue = board[row][col];
-            board[row][col] = EMPTY;  // replace it with the new value if it's been put
-            if (isPutViolating(row, col, num)) {
-                board[row][col] = oldValue;
-                throw new InvalidException(row, col, num);
-            }
         }
+        erase(row, col);  // replace it with the new value if it's been put
+    }
+
+    /**
+     * Check the put in O(1) without changing the board or throwing, e.g. for a server validating the players' moves.
+     * @return true if the put is in range, not at a given cell and not violating, the cell's own number is excluded
+     */
+    public boolean isValidPut(int row, int col, int num) {
+        if (row < 0 || row > 8 || col < 0 || col > 8 || num < 1 || num > 9 || isGiven(row, col)) {
+            return false;
+        }
+        return get(row, col) == num || !isPutViolating(row, col, num);
     }
 
-    private boolean isPutViolating(final int row, final int col, final int num) throws InvalidException {
-        return Arrays.<Supplier<Boolean>>asList(() -> isPutViolatingInRow(row, num),
-                () -> isPutViolatingInColumn(col, num),
-                () -> isPutViolatingInBox(row, col, num))
-                .parallelStream()
-                .anyMatch(Supplier::get);
+    /**
+     * @return true if the number has been put in the cell's row, column or box, the cell itself is not excluded
+     */
+    boolean isPutViolating(int row, int col, int num) {
+        return ((rowMasks[row] | colMasks[col] | boxMasks[box(row, col)]) & (1 << num)) != 0;
     }
 
-    private boolean isPutViolatingInRow(int row, int num) throws InvalidException {
-        for (int i = 0; i < board[row].length; i++) {
-            if (!isEmpty(row, i) && board[row][i] == num) {
-                return true;
-            }
+    /**
+     * The candidates are read in O(1) from the row, column and box masks maintained by every put, so a hint never
+     * solves the board nor changes it.
+     * @return the mask of the numbers (bit 1 ~ 9) which have not been put in the empty cell's row, column or box,
+     * or 0 if the cell is not empty
+     */
+    public int getCandidates(int row, int col) {
+        if (cells[row * 9 + col] != EMPTY) {
+            return 0;
         }
-        return false;
+        return ~(rowMasks[row] | colMasks[col] | boxMasks[box(row, col)]) & ALL_NUMBERS;
+    }
+
+    /**
+     * Read in O(1) from the masks maintained by every put, e.g. for a server to tell the players which units
+     * a move has completed, as a unit including the cell just filled in is completed by that move.
+     * @return the mask of {@link #ROW_COMPLETED}, {@link #COL_COMPLETED} and {@link #BOX_COMPLETED} of the cell's
+     * units holding all of 1 ~ 9
+     */
+    public int getCompletedUnits(int row, int col) {
+        return (rowMasks[row] == ALL_NUMBERS ? ROW_COMPLETED : 0) | (colMasks[col] == ALL_NUMBERS ? COL_COMPLETED : 0) |
+                (boxMasks[box(row, col)] == ALL_NUMBERS ? BOX_COMPLETED : 0);
+    }
+
+    /**
+     * @return the number of the rows, columns and boxes holding all of 1 ~ 9, at most 27
+     */
+    public int getCompletedUnitCount() {
+        return completedUnits;
     }
 
-    private boolean isPutViolatingInColumn(int col, int num) throws InvalidException {
-        for (int i = 0; i < board.length; i++) {
-            if (!isEmpty(i, col) && board[i][col] == num) {
-                return true;
+    /**
+     * Find the next move forced by the current board without changing it: a naked single (an empty cell with only
+     * one candidate), or else a hidden single (a number which fits only one empty cell of a row, a column or a box).
+     * This costs a scan of the 81 cells' candidates, far cheaper than solving the board.
+     * @param move the [row, col, number] of the forced move, set if found
+     * @return false if no move is forced, or an empty cell has no candidates as the board is stuck
+     */
+    public boolean findForcedMove(byte[] move) {
+        int hidden = -1;
+        for (int i = 0; i < 81; i++) {
+            if (cells[i] == EMPTY) {
+                int candidates = getCandidates(i / 9, i % 9);
+                if (candidates == 0) {
+                    return false;
+                }
+                if (Integer.bitCount(candidates) == 1) {
+                    return setMove(move, i, candidates);
+                }
             }
         }
-        return false;
+        for (int unit = 0; unit < 27 && hidden < 0; unit++) {
+            hidden = findHiddenSingle(unit, move);
+        }
+        return hidden >= 0;
     }
 
-    private boolean isPutViolatingInBox(int row, int col, int num) throws InvalidException {
-        int startRow = row / 3 * 3;
-        int startCol = col / 3 * 3;
-        for (int i = startRow; i < startRow + 3; i++) {
-            for (int j = startCol; j < startCol + 3; j++) {
-                if (!isEmpty(i, j) && board[i][j] == num) {
-                    return true;
-                }
+    /**
+     * @param unit 0 ~ 8 for the rows, 9 ~ 17 for the columns and 18 ~ 26 for the boxes
+     * @return the cell of the hidden single found in the unit, or -1
+     */
+    private int findHiddenSingle(int unit, byte[] move) {
+        int once = 0, twice = 0;
+        for (int k = 0; k < 9; k++) {
+            int i = unitCell(unit, k);
+            int candidates = cells[i] == EMPTY ? getCandidates(i / 9, i % 9) : 0;
+            twice |= once & candidates;
+            once |= candidates;
+        }
+        int singles = once & ~twice;
+        if (singles == 0) {
+            return -1;
+        }
+        int bit = Integer.lowestOneBit(singles);
+        for (int k = 0; k < 9; k++) {
+            int i = unitCell(unit, k);
+            if (cells[i] == EMPTY && (getCandidates(i / 9, i % 9) & bit) != 0) {
+                setMove(move, i, bit);
+                return i;
             }
         }
-        return false;
+        throw new IllegalStateException("The single must be in the unit.");
+    }
+
+    private static int unitCell(int unit, int k) {
+        if (unit < 9) {
+            return unit * 9 + k;
+        }
+        if (unit < 18) {
+            return k * 9 + unit - 9;
+        }
+        int box = unit - 18;
+        return (box / 3 * 3 + k / 3) * 9 + box % 3 * 3 + k % 3;
+    }
+
+    private static boolean setMove(byte[] move, int i, int bit) {
+        move[0] = (byte) (i / 9);
+        move[1] = (byte) (i % 9);
+        move[2] = (byte) Integer.numberOfTrailingZeros(bit);
+        return true;
     }
 
     public boolean isEmpty(int row, int col) {
-        return board[row][col] == EMPTY;
+        return cells[row * 9 + col] == EMPTY;
     }
 
     public static class Point {
@@ -164,97 +518,110 @@ public class Sudoku implements Serializable {
     }
 
     public void generateAnswer() throws NoSolutionsFoundException {
-        if (!dfsPut(getEmptyPoints(), 0)) {
+        generateAnswer(new ConstraintPropagationSolver());
+    }
+
+    public void generateAnswer(Solver solver) throws NoSolutionsFoundException {
+        if (!solver.solve(this)) {
             throw new NoSolutionsFoundException();
         }
     }
 
-    private boolean dfsPutRandomly(List<Point> points, int pos) {
-        Point p = points.get(pos);
-        List<Integer> numbers = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9);
-        Collections.shuffle(numbers);
-        for (int num : numbers) {
-            if (!isPutViolating(p.row, p.col, num)) {
-                board[p.row][p.col] = (byte) num;
-                if (pos + 1 >= points.size()) {
-                    return true;
-                }
-                if (dfsPutRandomly(points, pos + 1)) {
-                    return true;
-                }
-                board[p.row][p.col] = EMPTY;
+    /**
+     * @return the given cells in the row-major order, this allocates a new list, prefer {@link #isGiven(int, int)}
+     */
+    public List<Point> getPuzzledPoints() {
+        List<Point> puzzledPoints = new ArrayList<>();
+        for (int i = 0; i < 81; i++) {
+            if (isGiven(i / 9, i % 9)) {
+                puzzledPoints.add(new Point(i / 9, i % 9));
             }
         }
-        return false;
+        return puzzledPoints;
     }
 
-    private boolean dfsPut(List<Point> points, int pos) {
-        Point p = points.get(pos);
-        for (int num = 1; num <= 9; num++) {
-            if (!isPutViolating(p.row, p.col, num)) {
-                board[p.row][p.col] = (byte) num;
-                if (pos + 1 >= points.size()) {
-                    return true;
-                }
-                if (dfsPut(points, pos + 1)) {
-                    return true;
-                }
-                board[p.row][p.col] = EMPTY;
-            }
-        }
-        return false;
+    /**
+     * @return the number of the empty cells, in O(1)
+     */
+    public int getEmptyCount() {
+        return emptyCount;
     }
-    
-    public List<Point> getPuzzledPoints() {
-        return puzzledPoints;
+
+    /**
+     * Iterate the empty cells without allocation: <code>for (int k = 0; k < getEmptyCount(); k++)</code>.
+     * The order is unspecified and changes as the cells are filled or erased.
+     * @param k the position in the empty cells, from 0 to {@link #getEmptyCount()} - 1
+     * @return the row-major index (row * 9 + col) of the k-th empty cell
+     */
+    public int getEmptyCell(int k) {
+        if (k >= emptyCount) {
+            throw new IndexOutOfBoundsException(k);
+        }
+        return emptyCells[k];
     }
 
+    /**
+     * @return the empty points in the row-major order, this allocates a new list, prefer {@link #getEmptyCell(int)}
+     */
     public List<Point> getEmptyPoints() {
         List<Point> emptyPoints = new LinkedList<>();
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[i].length; j++) {
-                if (isEmpty(i, j)) {
-                    emptyPoints.add(new Point(i, j));
-                }
+        for (int i = 0; i < 81; i++) {
+            if (cells[i] == EMPTY) {
+                emptyPoints.add(new Point(i / 9, i % 9));
             }
         }
         return emptyPoints;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < board.length; i++) {
-            if (i != 0 && i % 3 == 0) {
-                stringBuilder.append("─────────────────────\n");  // Horizontal split line
+    /**
+     * Render the board into the buffer of {@link #RENDERED_LENGTH} chars without allocation, so that a client redrawing
+     * the board every turn reuses a buffer, e.g. <code>System.out.println(buffer)</code>. The layout is
+     * {@link #toString()}'s, 9 rows of 21 chars split into the bands by the lines of '─', without the final '\n'.
+     */
+    public void render(char[] buffer) {
+        int p = 0;
+        for (int row = 0; row < 9; row++) {
+            if (row != 0 && row % 3 == 0) {
+                for (int k = 0; k < 21; k++) {
+                    buffer[p++] = '─';  // the horizontal split line
+                }
+                buffer[p++] = '\n';
             }
-            for (int j = 0; j < board[i].length; j++) {
-                if (j != 0 && j % 3 == 0) {
-                    stringBuilder.append("| ");
+            for (int col = 0; col < 9; col++) {
+                if (col != 0 && col % 3 == 0) {
+                    buffer[p++] = '|';
+                    buffer[p++] = ' ';
                 }
-                if (board[i][j] == EMPTY) {
-                    stringBuilder.append('-');
-                } else {
-                    stringBuilder.append(board[i][j]);
+                byte num = cells[row * 9 + col];
+                buffer[p++] = num == EMPTY ? '-' : (char) ('0' + num);
+                if (col != 8) {
+                    buffer[p++] = ' ';
                 }
-                stringBuilder.append(" ");
             }
-            // delete the tailing space
-            stringBuilder.delete(stringBuilder.length() - 1, stringBuilder.length());
-
-            // replace the tail with the new line if this is not the final row
-            if (i != board.length - 1) {
-                stringBuilder.append("\n");
+            if (row != 8) {
+                buffer[p++] = '\n';
             }
         }
-        return stringBuilder.toString();
     }
 
+    @Override
+    public String toString() {
+        char[] buffer = new char[RENDERED_LENGTH];
+        render(buffer);
+        return new String(buffer);
+    }
+
+    /**
+     * Verify the board in O(1) by the completed units tracked on every put, rather than scanning the 81 cells.
+     * @return true if every row, column and box holds all of 1 ~ 9
+     */
     public boolean isSolved() {
-        return getEmptyPoints().isEmpty();
+        return completedUnits == 27;
     }
 
     public static class SudokuException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
         public SudokuException() {
         }
 
@@ -264,12 +631,16 @@ public class Sudoku implements Serializable {
     }
 
     public static class BoardInvalidException extends SudokuException {
+        private static final long serialVersionUID = 1L;
     }
 
     public static class NoSolutionsFoundException extends SudokuException {
+        private static final long serialVersionUID = 1L;
     }
 
     public static class InvalidException extends SudokuException {
+        private static final long serialVersionUID = 1L;
+
         InvalidException(int row, int col, int num) {
             super(String.format("The play at (row=%d, col=%d) with the number %d is invalid.", row, col, num));
         }
@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import sudoku.BatchSolver;
+import sudoku.Sudoku;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchSolverTest {
+    static final String EASY = "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+    static final String HARD = "4.....8.5.3..........7......2.....6.....8.4......1.......6.3.7.5..2.....1.4......";
+    static final String PATHOLOGICAL = "..............3.85..1.2.......5.7.....4...1...9.......5......73..2.1........4...9";
+    static final String UNSOLVABLE = "12345678.........9" + ".".repeat(63);  // (0, 8) can only be 9
+    static final String MALFORMED = "12345678";
+    final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void givenPuzzles_answersShouldBeInInputOrder() {
+        String[] puzzles = new String[100];
+        for (int i = 0; i < puzzles.length; i++) {
+            puzzles[i] = new String[]{EASY, HARD, PATHOLOGICAL, UNSOLVABLE, MALFORMED}[i % 5];
+        }
+        String[] answers = new BatchSolver(pool, BatchSolver.DEFAULT_NODE_LIMIT).solve(puzzles);
+        for (int i = 0; i < puzzles.length; i++) {
+            if (i % 5 < 3) {
+                assertSolves(puzzles[i], answers[i]);
+            } else {
+                assertEquals(BatchSolver.NO_SOLUTION, answers[i]);
+            }
+        }
+    }
+
+    @Test
+    void givenHardPuzzlesOverNodeLimit_shouldSplitAndStillSolve() {
+        String[] answers = new BatchSolver(pool, 1).solve(new String[]{HARD, PATHOLOGICAL, UNSOLVABLE});
+        assertSolves(HARD, answers[0]);
+        assertSolves(PATHOLOGICAL, answers[1]);
+        assertEquals(BatchSolver.NO_SOLUTION, answers[2]);
+    }
+
+    @Test
+    void givenLines_shouldWriteAnswerLines() throws IOException {
+        StringWriter out = new StringWriter();
+        long count = new BatchSolver(pool, BatchSolver.DEFAULT_NODE_LIMIT)
+                .solve(new BufferedReader(new StringReader(EASY + "\n\n" + UNSOLVABLE + "\n" + HARD + "\n")), out);
+        assertEquals(3, count);
+        String[] answers = out.toString().split("\n");
+        assertEquals(3, answers.length);
+        assertSolves(EASY, answers[0]);
+        assertEquals(BatchSolver.NO_SOLUTION, answers[1]);
+        assertSolves(HARD, answers[2]);
+    }
+
+    private static void assertSolves(String puzzle, String answer) {
+        Sudoku solved = new Sudoku();
+        solved.setLine(answer);  // should not throw if the answer is valid
+        assertTrue(solved.isSolved());
+        for (int i = 0; i < 81; i++) {
+            if (puzzle.charAt(i) != '.') {
+                assertEquals(puzzle.charAt(i), answer.charAt(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+import p2p.EventQueue;
+import p2p.FrameDecoder;
+import p2p.FrameEncoder;
+import p2p.OpCodes;
+import sudoku.Inputs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventQueueTest {
+    final EventQueue events = new EventQueue();
+
+    @Test
+    void givenConsoleLines_shouldQueueThemTrimmedAndThenTheEnd() throws IOException {
+        events.startConsoleReader(new ByteArrayInputStream("Johnny\n 0 8 9 \n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("Johnny", events.takeLine());
+        EventQueue.Event event = events.take();
+        assertEquals(EventQueue.Event.LINE, event.getType());
+        int[] move = new int[3];
+        assertTrue(Inputs.parseMove(event.getLine(), move));
+        assertArrayEquals(new int[]{0, 8, 9}, move);
+        assertNull(events.takeLine());  // the console is closed
+    }
+
+    @Test
+    void givenSocketFrames_shouldQueueThemInOrderAndThenTheDisconnection() throws IOException {
+        try (ServerSocket server = new ServerSocket(0);
+             Socket socket = new Socket("127.0.0.1", server.getLocalPort())) {
+            events.startSocketReader(socket);
+            try (Socket peer = server.accept()) {
+                new FrameEncoder().fillInNumber(0, 8, 9).opCode(OpCodes.GAME_OVER).writeTo(peer.getOutputStream());
+            }
+
+            FrameDecoder decoder = new FrameDecoder();
+            EventQueue.Event event = events.take();
+            assertEquals(EventQueue.Event.FRAME, event.getType());
+            assertSame(socket, event.getSource());
+            assertTrue(decoder.nextFrame(event.getFrame()));
+            assertEquals(OpCodes.FILL_IN_NUMBER, decoder.getOpCode());
+            assertArrayEquals(new byte[]{0, 8, 9}, new byte[]{decoder.readByte(), decoder.readByte(), decoder.readByte()});
+            decoder.endFrame();
+
+            event = events.take();
+            assertTrue(decoder.nextFrame(event.getFrame()));
+            assertEquals(OpCodes.GAME_OVER, decoder.getOpCode());
+            assertEquals(EventQueue.Event.DISCONNECTED, events.take().getType());
+        }
+    }
+
+    @Test
+    void givenInvalidMoveLines_shouldNotParse() {
+        int[] move = new int[3];
+        assertFalse(Inputs.parseMove("0 8", move));
+        assertFalse(Inputs.parseMove("0 9 1", move));
+        assertFalse(Inputs.parseMove("0 8 0", move));
+        assertFalse(Inputs.parseMove("a b c", move));
+    }
+}
@@ -0,0 +1,227 @@
+import org.junit.jupiter.api.Test;
+import p2p.FrameDecoder;
+import p2p.FrameEncoder;
+import p2p.OpCodes;
+import sudoku.Difficulty;
+import sudoku.Sudoku;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameCodecTest {
+    final FrameEncoder encoder = new FrameEncoder();
+    final FrameDecoder decoder = new FrameDecoder();
+    final byte[] batch = givenMoves(FrameDecoder.MAX_BATCH_MOVES);
+
+    @Test
+    void everyMessageShouldRoundTripThroughStream() throws IOException {
+        Sudoku sudoku = givenPuzzle();
+        encodeEveryMessage(sudoku);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeTo(out);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(OpCodes.SUBMIT_NAME, decoder.readFrame(in));
+        assertEquals("水球 Waterball", decoder.readName());
+        assertEquals(OpCodes.JOIN_LOBBY, decoder.readFrame(in));
+        assertEquals(Difficulty.HARD, decoder.readDifficulty());
+        assertEquals("Johnny", decoder.readName());
+        assertEquals(OpCodes.GAME_STARTED, decoder.readFrame(in));
+        Sudoku decoded = new Sudoku();
+        decoder.readBoard(decoded);
+        assertEquals(sudoku.toString(), decoded.toString());
+        for (int i = 0; i < 81; i++) {
+            assertEquals(sudoku.isGiven(i / 9, i % 9), decoded.isGiven(i / 9, i % 9));
+        }
+        assertEquals(OpCodes.FIRST_MOVE, decoder.readFrame(in));
+        assertEquals(OpCodes.FILL_IN_NUMBER, decoder.readFrame(in));
+        assertArrayEquals(new byte[]{8, 7, 6}, new byte[]{decoder.readByte(), decoder.readByte(), decoder.readByte()});
+        assertEquals("MOVE_REJECTED 0 1 9", readAndDecode(in));
+        assertEquals("JOIN_COOP EASY Ann", readAndDecode(in));
+        assertEquals("FILL_IN_NUMBERS 65535 " + movesToString(batch, FrameDecoder.MAX_BATCH_MOVES), readAndDecode(in));
+        assertEquals("FILL_IN_NUMBERS 0 " + movesToString(batch, 1), readAndDecode(in));
+        assertEquals("MOVES_ACKED 65535 64 ffffffffffffffff", readAndDecode(in));
+        assertEquals("MOVES_ACKED 0 3 5", readAndDecode(in));
+        assertEquals("SPECTATE 水球 Waterball", readAndDecode(in));
+        assertEquals("HINT_REQUEST 8 0", readAndDecode(in));
+        assertEquals("HINT 0 8 200 0 8 9", readAndDecode(in));
+        assertEquals("HINT 4 4 3fe -1 -1 -1", readAndDecode(in));
+        assertEquals("UNITS_COMPLETED 2 5 7", readAndDecode(in));
+        assertEquals(OpCodes.GAME_OVER, decoder.readFrame(in));
+        assertThrows(EOFException.class, () -> decoder.readFrame(in));
+    }
+
+    @Test
+    void everyMessageShouldRoundTripThroughBufferFedByteByByte() {
+        Sudoku sudoku = givenPuzzle();
+        encodeEveryMessage(sudoku);
+        ByteBuffer encoded = encoder.buffer();
+        encoded.flip();
+        ByteBuffer in = ByteBuffer.allocate(2 + FrameDecoder.MAX_FRAME_LENGTH);
+
+        StringBuilder decoded = new StringBuilder();
+        while (encoded.hasRemaining()) {
+            in.put(encoded.get());  // the frames arrive in pieces
+            in.flip();
+            while (decoder.nextFrame(in)) {
+                decoded.append(decodeToString()).append('\n');
+                decoder.endFrame();
+            }
+            in.compact();
+        }
+        assertEquals("SUBMIT_NAME 水球 Waterball\n" +
+                "JOIN_LOBBY HARD Johnny\n" +
+                "GAME_STARTED " + sudoku.toString().hashCode() + "\n" +
+                "FIRST_MOVE\n" +
+                "FILL_IN_NUMBER 8 7 6\n" +
+                "MOVE_REJECTED 0 1 9\n" +
+                "JOIN_COOP EASY Ann\n" +
+                "FILL_IN_NUMBERS 65535 " + movesToString(batch, FrameDecoder.MAX_BATCH_MOVES) + "\n" +
+                "FILL_IN_NUMBERS 0 " + movesToString(batch, 1) + "\n" +
+                "MOVES_ACKED 65535 64 ffffffffffffffff\n" +
+                "MOVES_ACKED 0 3 5\n" +
+                "SPECTATE 水球 Waterball\n" +
+                "HINT_REQUEST 8 0\n" +
+                "HINT 0 8 200 0 8 9\n" +
+                "HINT 4 4 3fe -1 -1 -1\n" +
+                "UNITS_COMPLETED 2 5 7\n" +
+                "GAME_OVER\n", decoded.toString());
+    }
+
+    @Test
+    void givenTruncatedOrOversizedFrame_shouldThrow() {
+        ByteBuffer in = ByteBuffer.allocate(16);
+        in.putShort((short) 1).put(OpCodes.FILL_IN_NUMBER).flip();  // without the row, col and number
+        assertTrue(decoder.nextFrame(in));
+        assertThrows(IllegalStateException.class, decoder::readByte);
+
+        ByteBuffer oversized = ByteBuffer.allocate(2);
+        oversized.putShort((short) (FrameDecoder.MAX_FRAME_LENGTH + 1)).flip();
+        assertThrows(IllegalStateException.class, () -> decoder.nextFrame(oversized));
+    }
+
+    private void encodeEveryMessage(Sudoku sudoku) {
+        encoder.submitName("水球 Waterball")
+                .joinLobby(Difficulty.HARD, "Johnny")
+                .gameStarted(sudoku)
+                .opCode(OpCodes.FIRST_MOVE)
+                .fillInNumber(8, 7, 6)
+                .moveRejected(0, 1, 9)
+                .joinCoop(Difficulty.EASY, "Ann")
+                .fillInNumbers(0xFFFF, batch, 0, FrameDecoder.MAX_BATCH_MOVES)  // the largest batch
+                .fillInNumbers(0x10000 & 0xFFFF, batch, 0, 1)  // the sequence wraps
+                .movesAcked(0xFFFF, FrameDecoder.MAX_BATCH_MOVES, -1L)
+                .movesAcked(0, 3, 0b101)
+                .spectate("水球 Waterball")
+                .hintRequest(8, 0)
+                .hint(0, 8, 1 << 9, new byte[]{0, 8, 9})  // with the forced move
+                .hint(4, 4, 0x3FE, null)  // without
+                .unitsCompleted(2, 5, Sudoku.ROW_COMPLETED | Sudoku.COL_COMPLETED | Sudoku.BOX_COMPLETED)
+                .opCode(OpCodes.GAME_OVER);
+    }
+
+    private String readAndDecode(DataInputStream in) throws IOException {
+        decoder.readFrame(in);
+        return decodeToString();
+    }
+
+    private String decodeToString() {
+        switch (decoder.getOpCode()) {
+            case OpCodes.SUBMIT_NAME:
+                return "SUBMIT_NAME " + decoder.readName();
+            case OpCodes.JOIN_LOBBY:
+                return "JOIN_LOBBY " + decoder.readDifficulty() + " " + decoder.readName();
+            case OpCodes.GAME_STARTED:
+                Sudoku sudoku = new Sudoku();
+                decoder.readBoard(sudoku);
+                return "GAME_STARTED " + sudoku.toString().hashCode();
+            case OpCodes.FIRST_MOVE:
+                return "FIRST_MOVE";
+            case OpCodes.FILL_IN_NUMBER:
+                return "FILL_IN_NUMBER " + decoder.readByte() + " " + decoder.readByte() + " " + decoder.readByte();
+            case OpCodes.MOVE_REJECTED:
+                return "MOVE_REJECTED " + decoder.readByte() + " " + decoder.readByte() + " " + decoder.readByte();
+            case OpCodes.JOIN_COOP:
+                return "JOIN_COOP " + decoder.readDifficulty() + " " + decoder.readName();
+            case OpCodes.FILL_IN_NUMBERS:
+                int seq = decoder.readUnsignedShort();
+                byte[] moves = new byte[FrameDecoder.MAX_BATCH_MOVES * 3];
+                return "FILL_IN_NUMBERS " + seq + " " + movesToString(moves, decoder.readMoves(moves));
+            case OpCodes.MOVES_ACKED:
+                return "MOVES_ACKED " + decoder.readUnsignedShort() + " " + (decoder.readByte() & 0xFF) + " " +
+                        Long.toHexString(decoder.readLong());
+            case OpCodes.SPECTATE:
+                return "SPECTATE " + decoder.readName();
+            case OpCodes.HINT_REQUEST:
+                return "HINT_REQUEST " + decoder.readByte() + " " + decoder.readByte();
+            case OpCodes.HINT:
+                return "HINT " + decoder.readByte() + " " + decoder.readByte() + " " +
+                        Integer.toHexString(decoder.readUnsignedShort()) + " " +
+                        decoder.readByte() + " " + decoder.readByte() + " " + decoder.readByte();
+            case OpCodes.UNITS_COMPLETED:
+                return "UNITS_COMPLETED " + decoder.readByte() + " " + decoder.readByte() + " " + decoder.readByte();
+            case OpCodes.GAME_OVER:
+                return "GAME_OVER";
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    @Test
+    void givenTooManyMovesInBatch_shouldThrow() {
+        byte[] moves = givenMoves(FrameDecoder.MAX_BATCH_MOVES + 1);
+        assertThrows(IllegalArgumentException.class,
+                () -> encoder.fillInNumbers(0, moves, 0, FrameDecoder.MAX_BATCH_MOVES + 1));
+
+        ByteBuffer in = ByteBuffer.allocate(2 + FrameDecoder.MAX_FRAME_LENGTH);
+        in.putShort((short) (4 + moves.length)).put(OpCodes.FILL_IN_NUMBERS).putShort((short) 0)
+                .put((byte) (FrameDecoder.MAX_BATCH_MOVES + 1)).put(moves).flip();
+        assertTrue(decoder.nextFrame(in));
+        decoder.readUnsignedShort();
+        assertThrows(IllegalStateException.class, () -> decoder.readMoves(new byte[moves.length]));
+    }
+
+    private static byte[] givenMoves(int count) {
+        byte[] moves = new byte[count * 3];
+        for (int i = 0; i < count; i++) {
+            moves[i * 3] = (byte) (i / 9 % 9);
+            moves[i * 3 + 1] = (byte) (i % 9);
+            moves[i * 3 + 2] = (byte) (i % 9 + 1);
+        }
+        return moves;
+    }
+
+    private static String movesToString(byte[] moves, int count) {
+        StringBuilder string = new StringBuilder().append(count);
+        for (int i = 0; i < count * 3; i++) {
+            string.append(i % 3 == 0 ? ' ' : ',').append(moves[i]);
+        }
+        return string.toString();
+    }
+
+    @Test
+    void givenSecondGameStarted_shouldReplaceTheBoardDecodedBefore() throws IOException {
+        Sudoku first = givenPuzzle(), second = givenPuzzle();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.gameStarted(first).gameStarted(first).gameStarted(second).writeTo(out);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+
+        Sudoku decoded = new Sudoku();
+        for (Sudoku expected : new Sudoku[]{first, first, second}) {
+            assertEquals(OpCodes.GAME_STARTED, decoder.readFrame(in));
+            decoder.readBoard(decoded);
+            assertEquals(expected.toString(), decoded.toString());
+            for (int i = 0; i < 81; i++) {
+                assertEquals(expected.isGiven(i / 9, i % 9), decoded.isGiven(i / 9, i % 9));
+            }
+        }
+    }
+
+    private Sudoku givenPuzzle() {
+        Sudoku sudoku = new Sudoku();
+        sudoku.generateUniquePuzzle(Difficulty.MEDIUM);
+        return sudoku;
+    }
+}
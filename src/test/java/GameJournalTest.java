@@ -0,0 +1,80 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import p2p.GameJournal;
+import sudoku.Difficulty;
+import sudoku.Sudoku;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void givenGamesOfManySessions_shouldRecoverOnlyThoseNotOver() throws IOException {
+        Path path = dir.resolve("games.journal");
+        Sudoku sudoku = new Sudoku();
+        sudoku.generateUniquePuzzle(Difficulty.EASY);
+        int first, second;
+        try (GameJournal journal = new GameJournal(path, true)) {
+            first = journal.gameStarted(sudoku, "Johnny", "Waterball");
+            second = journal.gameStarted(sudoku, "Alice", "Bob");
+            int i = sudoku.getEmptyCell(0), j = sudoku.getEmptyCell(1);
+            journal.move(first, i / 9, i % 9, 1);
+            journal.move(second, i / 9, i % 9, 2);
+            journal.move(first, j / 9, j % 9, 3);
+            journal.commit();  // a single commit for both sessions
+            journal.gameOver(second);
+        }
+
+        try (GameJournal journal = new GameJournal(path, true)) {
+            List<GameJournal.Game> games = new ArrayList<>(journal.getUnfinishedGames());
+            assertEquals(1, games.size());
+            GameJournal.Game game = games.get(0);
+            assertEquals(first, game.getId());
+            assertEquals("Johnny", game.getFirstName());
+            assertEquals("Waterball", game.getSecondName());
+            Sudoku startBoard = game.getStartBoard();
+            assertEquals(sudoku.toLine(), startBoard.toLine());
+            for (int i = 0; i < 81; i++) {
+                assertEquals(sudoku.isGiven(i / 9, i % 9), startBoard.isGiven(i / 9, i % 9));
+            }
+            assertEquals(2, game.getMoveCount());
+            assertEquals(1, game.getMoves()[2]);
+            assertEquals(3, game.getMoves()[5]);
+            assertTrue(journal.gameStarted(sudoku, "Carol", "Dave") > second);  // the ids are never reused
+        }
+    }
+
+    @Test
+    void givenRecordTornByCrash_shouldRecoverUpToTheLastWholeRecord() throws IOException {
+        Path path = dir.resolve("games.journal");
+        Sudoku sudoku = new Sudoku();
+        sudoku.generateUniquePuzzle(Difficulty.EASY);
+        try (GameJournal journal = new GameJournal(path, false)) {
+            int id = journal.gameStarted(sudoku, "Johnny", "Waterball");
+            int i = sudoku.getEmptyCell(0);
+            journal.move(id, i / 9, i % 9, 1);
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 2));  // the move's CRC is torn
+        Files.write(path, new byte[]{0, 10, 2}, StandardOpenOption.APPEND);
+
+        try (GameJournal journal = new GameJournal(path, false)) {
+            GameJournal.Game game = journal.getUnfinishedGames().iterator().next();
+            assertEquals(0, game.getMoveCount());
+            journal.move(game.getId(), 0, 0, 0);
+        }
+        try (GameJournal journal = new GameJournal(path, false)) {  // compacted, so the appends after the torn record are readable
+            assertEquals(1, journal.getUnfinishedGames().iterator().next().getMoveCount());
+        }
+    }
+}
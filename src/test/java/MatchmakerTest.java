@@ -0,0 +1,57 @@
+import multiplayer.Matchmaker;
+import org.junit.jupiter.api.Test;
+import sudoku.Difficulty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchmakerTest {
+    final List<String> matches = new ArrayList<>();
+    final Matchmaker<String> matchmaker = new Matchmaker<>((first, second, difficulty) -> {
+        synchronized (matches) {
+            matches.add(first + " vs " + second + " (" + difficulty + ")");
+        }
+    });
+
+    @Test
+    void shouldPairPlayersOfTheSameDifficultyInJoiningOrder() {
+        matchmaker.enqueue("A", Difficulty.EASY);
+        matchmaker.enqueue("B", Difficulty.HARD);
+        matchmaker.enqueue("C", Difficulty.EASY);
+        matchmaker.enqueue("D", Difficulty.EASY);
+        assertEquals(List.of("A vs C (EASY)"), matches);
+        assertEquals(1, matchmaker.getQueueDepth(Difficulty.EASY));
+        assertEquals(1, matchmaker.getQueueDepth(Difficulty.HARD));
+        assertEquals(1, matchmaker.getMatches());
+        assertTrue(matchmaker.getMaxLatencyNanos() >= matchmaker.getAverageLatencyNanos());
+    }
+
+    @Test
+    void givenCanceledPlayer_shouldNotBeMatched() {
+        matchmaker.enqueue("A", Difficulty.MEDIUM);
+        assertTrue(matchmaker.cancel("A", Difficulty.MEDIUM));
+        assertFalse(matchmaker.cancel("A", Difficulty.MEDIUM));
+        matchmaker.enqueue("B", Difficulty.MEDIUM);
+        assertTrue(matches.isEmpty());
+        assertEquals(1, matchmaker.getQueueDepth(Difficulty.MEDIUM));
+    }
+
+    @Test
+    void givenConcurrentJoins_everyPlayerShouldBeMatchedExactlyOnce() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 10_000; i++) {
+            String player = "P" + i;
+            executor.execute(() -> matchmaker.enqueue(player, Difficulty.values()[player.hashCode() & 1]));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        int waiting = matchmaker.getQueueDepth(Difficulty.EASY) + matchmaker.getQueueDepth(Difficulty.MEDIUM);
+        assertEquals(10_000, matches.size() * 2 + waiting);
+        assertTrue(waiting <= 2);
+    }
+}
@@ -0,0 +1,55 @@
+import metrics.Histogram;
+import metrics.Metrics;
+import org.junit.jupiter.api.Test;
+import sudoku.ConstraintPropagationSolver;
+import sudoku.Difficulty;
+import sudoku.Sudoku;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+    @Test
+    void givenValues_percentilesShouldBeUpperBoundsOfPowerOfTwoBuckets() {
+        Histogram histogram = Metrics.histogram("test.latency");
+        for (int i = 0; i < 98; i++) {
+            histogram.record(100);  // [64, 128)
+        }
+        histogram.record(5000);  // [4096, 8192)
+        histogram.record(0);
+        assertEquals(100, histogram.getCount());
+        assertEquals(98 * 100 + 5000, histogram.getSum());
+        assertEquals(127, histogram.getPercentile(50));
+        assertEquals(127, histogram.getPercentile(98));
+        assertEquals(8191, histogram.getPercentile(100));
+        assertEquals(0, histogram.getPercentile(0));
+        assertSame(histogram, Metrics.histogram("test.latency"));
+    }
+
+    @Test
+    void whenSolvingAndGenerating_shouldPublishThroughJmxAndDump() throws IOException, JMException {
+        Metrics.counter("test.counter").add(42);
+        Sudoku sudoku = new Sudoku();
+        sudoku.generateUniquePuzzle(Difficulty.HARD);
+        new ConstraintPropagationSolver().solve(sudoku);
+
+        Metrics.registerMBean();
+        Metrics.registerMBean();  // no effect
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+        assertEquals(42L, ((TabularData) ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(name, "Counters")).get(new Object[]{"test.counter"}).get("value"));
+
+        StringBuilder dump = new StringBuilder();
+        Metrics.dump(dump);
+        assertTrue(dump.toString().contains("test.counter 42\n"));
+        assertTrue(dump.toString().contains("generation.uniqueness_checks "));
+        assertTrue(dump.toString().matches("(?s).*generation\\.nanos count=[1-9].*"));
+        assertTrue(dump.toString().matches("(?s).*solver\\.propagation\\.nodes count=[1-9].*"));
+    }
+}
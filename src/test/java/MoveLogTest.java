@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.Test;
+import p2p.FrameDecoder;
+import p2p.FrameEncoder;
+import p2p.MoveLog;
+import p2p.OpCodes;
+import sudoku.DancingLinksSolver;
+import sudoku.Sudoku;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveLogTest {
+    static final String PUZZLE = "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+    final FrameEncoder encoder = new FrameEncoder();
+    final FrameDecoder decoder = new FrameDecoder();
+
+    @Test
+    void givenLongGame_resumeShouldBeLatestSnapshotAndOnlyMovesAfterIt() {
+        Sudoku sudoku = new Sudoku();
+        sudoku.generateUniquePuzzle(40, 1000);
+        Sudoku answer = new Sudoku();
+        sudoku.copyTo(answer);
+        new DancingLinksSolver().solve(answer);
+        MoveLog log = new MoveLog(sudoku);
+        int moves = MoveLog.SNAPSHOT_INTERVAL + 5;
+        for (int k = 0; k < moves; k++) {
+            int i = sudoku.getEmptyCell(0);
+            sudoku.put(i / 9, i % 9, answer.get(i / 9, i % 9));
+            log.append(i / 9, i % 9, answer.get(i / 9, i % 9));
+        }
+        assertEquals(moves, log.size());
+        assertEquals(MoveLog.SNAPSHOT_INTERVAL, log.getSnapshotMoves());
+
+        Sudoku resumed = new Sudoku();
+        ByteBuffer frames = log.writeResume(encoder).buffer().flip();
+        assertTrue(decoder.nextFrame(frames));
+        assertEquals(OpCodes.GAME_STARTED, decoder.getOpCode());
+        decoder.readBoard(resumed);
+        decoder.endFrame();
+        assertTrue(decoder.nextFrame(frames));
+        assertEquals(OpCodes.FILL_IN_NUMBERS, decoder.getOpCode());
+        assertEquals(MoveLog.SNAPSHOT_INTERVAL, decoder.readUnsignedShort());
+        byte[] triples = new byte[FrameDecoder.MAX_BATCH_MOVES * 3];
+        int count = decoder.readMoves(triples);
+        assertEquals(5, count);
+        for (int k = 0; k < count; k++) {
+            resumed.put(triples[k * 3], triples[k * 3 + 1], triples[k * 3 + 2]);
+        }
+        decoder.endFrame();
+        assertFalse(decoder.nextFrame(frames));
+        assertEquals(sudoku.toLine(), resumed.toLine());
+        for (int i = 0; i < 81; i++) {
+            assertEquals(sudoku.isGiven(i / 9, i % 9), resumed.isGiven(i / 9, i % 9));
+        }
+    }
+
+    @Test
+    void givenNoMovesAfterSnapshot_resumeShouldBeOnlyTheSnapshot() {
+        Sudoku sudoku = new Sudoku();
+        sudoku.setLine(PUZZLE);
+        ByteBuffer frames = new MoveLog(sudoku).writeResume(encoder).buffer().flip();
+        assertTrue(decoder.nextFrame(frames));
+        Sudoku resumed = new Sudoku();
+        decoder.readBoard(resumed);
+        decoder.endFrame();
+        assertFalse(decoder.nextFrame(frames));
+        assertEquals(PUZZLE, resumed.toLine());
+    }
+}
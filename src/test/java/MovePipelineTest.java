@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+import p2p.FrameDecoder;
+import p2p.FrameEncoder;
+import p2p.MovePipeline;
+import p2p.OpCodes;
+import sudoku.Sudoku;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovePipelineTest {
+    final FrameEncoder encoder = new FrameEncoder();
+    final FrameDecoder decoder = new FrameDecoder();
+    final MovePipeline pipeline = new MovePipeline(new Sudoku());
+
+    @Test
+    void givenQueuedMoves_shouldFlushThemInBatchesOfConsecutiveSequences() {
+        for (int i = 0; i < FrameDecoder.MAX_BATCH_MOVES + 1; i++) {
+            assertTrue(pipeline.move(i / 9, i % 9, (i % 9 + i / 9 * 3 + i / 27) % 9 + 1));  // a valid grid pattern
+        }
+        assertFalse(pipeline.move(0, 1, 1));  // violating on the local board
+        pipeline.flush(encoder);
+        ByteBuffer frames = encoder.buffer().flip();
+
+        assertTrue(decoder.nextFrame(frames));
+        assertEquals(OpCodes.FILL_IN_NUMBERS, decoder.getOpCode());
+        assertEquals(0, decoder.readUnsignedShort());
+        assertEquals(FrameDecoder.MAX_BATCH_MOVES, decoder.readMoves(new byte[FrameDecoder.MAX_BATCH_MOVES * 3]));
+        decoder.endFrame();
+        assertTrue(decoder.nextFrame(frames));
+        assertEquals(FrameDecoder.MAX_BATCH_MOVES, decoder.readUnsignedShort());
+        assertEquals(1, decoder.readMoves(new byte[FrameDecoder.MAX_BATCH_MOVES * 3]));
+        assertEquals(FrameDecoder.MAX_BATCH_MOVES + 1, pipeline.getPendingMoves());
+    }
+
+    @Test
+    void whenMoveRejected_shouldRollBackOnlyThatMove() {
+        pipeline.move(0, 0, 1);
+        pipeline.move(0, 1, 2);
+        pipeline.flush(encoder);
+        encoder.buffer().clear();
+
+        receive(encoder.fillInNumbers(0, new byte[]{0, 1, 3}, 0, 1));  // the partner's move goes first on the server
+        assertEquals(2, pipeline.getBoard().get(0, 1));  // the pending move is replayed over the partner's
+        receive(encoder.movesAcked(0, 2, 0b01));
+        assertEquals(1, pipeline.getRejectedMoves());
+        assertEquals(0, pipeline.getPendingMoves());
+        assertEquals(1, pipeline.getBoard().get(0, 0));
+        assertEquals(3, pipeline.getBoard().get(0, 1));
+
+        assertThrows(IllegalStateException.class, () -> receive(encoder.movesAcked(0, 1, 1)));
+    }
+
+    private void receive(FrameEncoder frame) {
+        ByteBuffer in = frame.buffer().flip();
+        assertTrue(decoder.nextFrame(in));
+        try {
+            pipeline.onFrame(decoder);
+        } finally {
+            frame.buffer().clear();
+        }
+    }
+}
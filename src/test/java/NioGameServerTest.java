@@ -0,0 +1,349 @@
+import metrics.Metrics;
+import multiplayer.NioGameServer;
+import multiplayer.SpectatorPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import p2p.FrameDecoder;
+import p2p.GameJournal;
+import p2p.OpCodes;
+import sudoku.Difficulty;
+import sudoku.PuzzlePool;
+import sudoku.Sudoku;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioGameServerTest {
+    final static int STALLED_RECEIVE_BUFFER = 4096;
+    final static int MAX_FLOOD_BATCHES = 200_000;  // about 40 MB, far over the loopback's socket buffers
+    final byte[] moves = new byte[FrameDecoder.MAX_BATCH_MOVES * 3];
+    NioGameServer server;
+    PuzzlePool puzzlePool;
+
+    @BeforeEach
+    void setup() throws IOException {
+        puzzlePool = new PuzzlePool(1, 4, 1);
+        server = new NioGameServer(0, puzzlePool);
+        new Thread(server).start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        puzzlePool.close();
+    }
+
+    @Test
+    void givenManyPairsOfPlayers_everyGameShouldBePlayedIndependently() throws IOException {
+        TestPlayer[] players = new TestPlayer[8];
+        for (int i = 0; i < players.length; i += 2) {
+            players[i] = new TestPlayer(server.getPort());
+            players[i + 1] = new TestPlayer(server.getPort());
+            players[i].submitName("Player" + i);
+            awaitQueueDepth(Difficulty.MEDIUM, 1);  // the one joining first moves first
+            players[i + 1].submitName("Player" + (i + 1));
+            assertEquals("Player" + (i + 1), players[i].readOpponentName());
+            assertEquals("Player" + i, players[i + 1].readOpponentName());
+            players[i].readGameStarted();
+            players[i + 1].readGameStarted();
+        }
+        for (int i = 0; i < players.length; i += 2) {
+            TestPlayer.play(players[i], players[i + 1]);
+            assertEquals(-1, players[i].in.read());  // closed by the server after the game over
+            assertEquals(-1, players[i + 1].in.read());
+        }
+    }
+
+    @Test
+    void givenPlayersJoiningLobby_shouldMatchThoseOfTheSameDifficulty() throws IOException {
+        try (TestPlayer easy = new TestPlayer(server.getPort());
+             TestPlayer hard = new TestPlayer(server.getPort());
+             TestPlayer anotherHard = new TestPlayer(server.getPort())) {
+            easy.joinLobby("Easy", Difficulty.EASY);
+            hard.joinLobby("Hard", Difficulty.HARD);
+            anotherHard.joinLobby("AnotherHard", Difficulty.HARD);
+            assertEquals("AnotherHard", hard.readOpponentName());
+            assertEquals("Hard", anotherHard.readOpponentName());
+            assertEquals(1, server.getMatchmaker().getQueueDepth(Difficulty.EASY));
+
+            try (TestPlayer anotherEasy = new TestPlayer(server.getPort())) {
+                anotherEasy.submitName("AnotherEasy");  // joins MEDIUM
+                assertEquals(1, server.getMatchmaker().getQueueDepth(Difficulty.EASY));
+            }
+            awaitQueueDepth(Difficulty.MEDIUM, 0);  // removed from the lobby once gone
+            assertEquals(1, server.getMatchmaker().getMatches());
+        }
+    }
+
+    private void awaitQueueDepth(Difficulty difficulty, int depth) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (server.getMatchmaker().getQueueDepth(difficulty) != depth) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void whenPlayerMovesOnGivenCells_shouldRejectAndKeepTheGame() throws IOException {
+        try (TestPlayer first = new TestPlayer(server.getPort());
+             TestPlayer second = new TestPlayer(server.getPort())) {
+            first.submitName("Johnny");
+            awaitQueueDepth(Difficulty.MEDIUM, 1);
+            second.submitName("Waterball");
+            first.readOpponentName();
+            second.readOpponentName();
+            first.readGameStarted();
+            second.readGameStarted();
+            TestPlayer.play(first, second, true);
+        }
+    }
+
+    @Test
+    void givenCoopPlayers_shouldPipelineMovesOnTheSameBoard() throws IOException {
+        try (TestPlayer first = new TestPlayer(server.getPort());
+             TestPlayer second = new TestPlayer(server.getPort());
+             TestPlayer turnBased = new TestPlayer(server.getPort())) {
+            turnBased.joinLobby("TurnBased", Difficulty.EASY);
+            first.joinCoop("Johnny", Difficulty.EASY);
+            second.joinCoop("Waterball", Difficulty.EASY);
+            assertEquals("Waterball", first.readOpponentName());
+            assertEquals("Johnny", second.readOpponentName());
+            assertEquals(1, server.getMatchmaker().getQueueDepth(Difficulty.EASY));
+            first.readGameStarted();
+            second.readGameStarted();
+            TestPlayer.playCoop(first, second);
+            assertEquals(-1, first.in.read());
+            assertEquals(-1, second.in.read());
+        }
+    }
+
+    @Test
+    void givenSpectator_shouldWatchEveryMoveUntilGameOver() throws IOException {
+        try (TestPlayer first = new TestPlayer(server.getPort());
+             TestPlayer second = new TestPlayer(server.getPort());
+             TestPlayer spectator = new TestPlayer(server.getPort())) {
+            first.submitName("Johnny");
+            awaitQueueDepth(Difficulty.MEDIUM, 1);
+            second.submitName("Waterball");
+            first.readOpponentName();
+            second.readOpponentName();
+            first.readGameStarted();
+            second.readGameStarted();
+
+            spectator.spectate("Waterball");
+            assertEquals("Johnny", spectator.readOpponentName());
+            assertEquals("Waterball", spectator.readOpponentName());
+            spectator.readGameStarted();
+            TestPlayer.play(first, second);
+            while (!spectator.sudoku.isSolved()) {
+                spectator.readFillInNumber();
+            }
+            spectator.readOpCode(OpCodes.GAME_OVER);
+            assertEquals(-1, spectator.in.read());
+            assertEquals(first.sudoku.toString(), spectator.sudoku.toString());
+        }
+    }
+
+    @Test
+    void givenStalledSpectatorAndCoalescePolicy_shouldSendTheCurrentBoardInstead() throws IOException {
+        try (TestPlayer first = new TestPlayer(server.getPort());
+             TestPlayer second = new TestPlayer(server.getPort());
+             TestPlayer spectator = new TestPlayer(server.getPort(), STALLED_RECEIVE_BUFFER)) {
+            startCoopGame(first, second);
+            spectator.spectate("Johnny");
+            spectator.readOpponentName();
+            spectator.readOpponentName();
+            spectator.readGameStarted();
+
+            long published = flood(first, second, Metrics.counter("spectators.coalesced"));  // not read meanwhile
+            TestPlayer.playCoop(first, second);
+            long read = 0;
+            int snapshots = 0;
+            byte opCode;
+            while ((opCode = spectator.decoder.readFrame(spectator.in)) != OpCodes.GAME_OVER) {
+                if (opCode == OpCodes.GAME_STARTED) {
+                    spectator.decoder.readBoard(spectator.sudoku);  // replaces the board with the missed moves
+                    snapshots++;
+                    read += 2 + 1 + 81 + Sudoku.GIVENS_SIZE;
+                } else {
+                    assertEquals(OpCodes.FILL_IN_NUMBERS, opCode);
+                    spectator.decoder.readUnsignedShort();
+                    int count = spectator.decoder.readMoves(moves);
+                    for (int i = 0; i < count; i++) {
+                        spectator.sudoku.put(moves[i * 3], moves[i * 3 + 1], moves[i * 3 + 2]);
+                    }
+                    read += 2 + 1 + 2 + 1 + count * 3;
+                }
+            }
+            assertEquals(1, snapshots, "The backlog should be coalesced into a snapshot");
+            assertTrue(read < published, "The missed moves should not be sent");
+            assertEquals(first.answer.toString(), spectator.sudoku.toString());
+            assertEquals(-1, spectator.in.read());
+        }
+    }
+
+    @Test
+    void givenStalledSpectatorAndDropPolicy_shouldDisconnectItAndKeepTheGame() throws IOException {
+        server.close();
+        server = new NioGameServer(0, puzzlePool, SpectatorPolicy.DROP, null);
+        new Thread(server).start();
+        try (TestPlayer first = new TestPlayer(server.getPort());
+             TestPlayer second = new TestPlayer(server.getPort());
+             TestPlayer spectator = new TestPlayer(server.getPort(), STALLED_RECEIVE_BUFFER)) {
+            startCoopGame(first, second);
+            spectator.spectate("Johnny");
+            spectator.readOpponentName();
+            spectator.readOpponentName();
+            spectator.readGameStarted();
+
+            flood(first, second, Metrics.counter("spectators.dropped"));
+            TestPlayer.playCoop(first, second);
+            byte opCode;
+            do {
+                opCode = readFrameOrEnd(spectator);
+                assertNotEquals(OpCodes.GAME_OVER, opCode, "The spectator should be disconnected before the game over");
+            } while (opCode != 0);
+        }
+    }
+
+    /**
+     * @return the op code, or 0 once the stream ends
+     */
+    private static byte readFrameOrEnd(TestPlayer player) throws IOException {
+        try {
+            return player.decoder.readFrame(player.in);
+        } catch (EOFException end) {
+            return 0;
+        }
+    }
+
+    private void startCoopGame(TestPlayer first, TestPlayer second) throws IOException {
+        first.joinCoop("Johnny", Difficulty.EASY);
+        second.joinCoop("Waterball", Difficulty.EASY);
+        first.readOpponentName();
+        second.readOpponentName();
+        first.readGameStarted();
+        second.readGameStarted();
+    }
+
+    /**
+     * Toggle an empty cell between two of its candidates in full batches, which are published to the spectators
+     * until the backlog limit is exceeded past the sockets' buffers, and leave the cell with its answer. Every batch's
+     * MOVES_ACKED and forwarded FILL_IN_NUMBERS are read, so the players never fall behind.
+     * @param handled the metric counting the spectators over the limit
+     * @return the bytes published to every spectator
+     */
+    private static long flood(TestPlayer first, TestPlayer second, LongAdder handled) throws IOException {
+        int i = 0;
+        while (!first.sudoku.isEmpty(i / 9, i % 9) || Integer.bitCount(first.sudoku.getCandidates(i / 9, i % 9)) < 2) {
+            i++;  // with 2 candidates, the cell is never the last one of its units
+        }
+        int answer = first.answer.get(i / 9, i % 9);
+        int other = Integer.numberOfTrailingZeros(first.sudoku.getCandidates(i / 9, i % 9) & ~(1 << answer));
+        byte[] toggles = new byte[FrameDecoder.MAX_BATCH_MOVES * 3];
+        for (int k = 0; k < FrameDecoder.MAX_BATCH_MOVES; k++) {
+            toggles[k * 3] = (byte) (i / 9);
+            toggles[k * 3 + 1] = (byte) (i % 9);
+            toggles[k * 3 + 2] = (byte) (k % 2 == 0 ? other : answer);  // ends with the answer
+        }
+        long handledBefore = handled.sum();
+        int batches = 0;
+        while (handled.sum() == handledBefore) {
+            assertTrue(batches++ < MAX_FLOOD_BATCHES, "The spectator should fall behind the limit");
+            first.encoder.fillInNumbers(0, toggles, 0, FrameDecoder.MAX_BATCH_MOVES).writeTo(first.out);
+            first.readOpCode(OpCodes.MOVES_ACKED);
+            second.readOpCode(OpCodes.FILL_IN_NUMBERS);  // published to the spectators before forwarded
+        }
+        return (long) batches * (2 + 1 + 2 + 1 + FrameDecoder.MAX_BATCH_MOVES * 3);
+    }
+
+    @Test
+    void whenSpectatingUnknownPlayer_shouldReceiveGameOver() throws IOException {
+        try (TestPlayer spectator = new TestPlayer(server.getPort())) {
+            spectator.spectate("Nobody");
+            spectator.readOpCode(OpCodes.GAME_OVER);
+            assertEquals(-1, spectator.in.read());
+        }
+    }
+
+    @Test
+    void givenJournal_shouldCommitMovesBeforeForwarding(@TempDir Path dir) throws IOException, InterruptedException {
+        server.close();
+        Path path = dir.resolve("games.journal");
+        try (GameJournal journal = new GameJournal(path, true)) {
+            server = new NioGameServer(0, puzzlePool, SpectatorPolicy.COALESCE, journal);
+            Thread thread = new Thread(server);
+            thread.start();
+            try (TestPlayer first = new TestPlayer(server.getPort());
+                 TestPlayer second = new TestPlayer(server.getPort())) {
+                first.submitName("Johnny");
+                awaitQueueDepth(Difficulty.MEDIUM, 1);
+                second.submitName("Waterball");
+                first.readOpponentName();
+                second.readOpponentName();
+                first.readGameStarted();
+                second.readGameStarted();
+                first.readOpCode(OpCodes.FIRST_MOVE);
+                first.fillInNumber();
+                second.readFillInNumber();  // written only after committed
+                Files.copy(path, dir.resolve("crashed.journal"));  // as if the server crashed now
+                try (GameJournal recovered = new GameJournal(dir.resolve("crashed.journal"), true)) {
+                    GameJournal.Game game = recovered.getUnfinishedGames().iterator().next();
+                    assertEquals("Johnny", game.getFirstName());
+                    assertEquals(1, game.getMoveCount());
+                }
+            }
+            server.close();
+            thread.join();  // stop committing before the journal is closed
+        }
+    }
+
+    @Test
+    void whenPlayerRequestsHint_shouldAnswerForcedMoveOfTheAnswer() throws IOException {
+        try (TestPlayer first = new TestPlayer(server.getPort());
+             TestPlayer second = new TestPlayer(server.getPort())) {
+            first.submitName("Johnny");
+            awaitQueueDepth(Difficulty.MEDIUM, 1);
+            second.submitName("Waterball");
+            first.readOpponentName();
+            second.readOpponentName();
+            first.readGameStarted();
+            second.readGameStarted();
+            int i = second.sudoku.getEmptyCell(0);
+            second.encoder.hintRequest(i / 9, i % 9).writeTo(second.out);  // not the player's turn, still answered
+            second.readOpCode(OpCodes.HINT);
+            assertEquals(i / 9, second.decoder.readByte());
+            assertEquals(i % 9, second.decoder.readByte());
+            assertEquals(second.sudoku.getCandidates(i / 9, i % 9), second.decoder.readUnsignedShort());
+            byte row = second.decoder.readByte(), col = second.decoder.readByte(), num = second.decoder.readByte();
+            assertEquals(second.answer.get(row, col), num);  // a forced move is always the unique answer's
+            TestPlayer.play(first, second);
+        }
+    }
+
+    @Test
+    void whenPlayerMovesOutOfTurn_shouldEndTheGame() throws IOException {
+        try (TestPlayer first = new TestPlayer(server.getPort());
+             TestPlayer second = new TestPlayer(server.getPort())) {
+            first.submitName("Johnny");
+            awaitQueueDepth(Difficulty.MEDIUM, 1);
+            second.submitName("Waterball");
+            first.readOpponentName();
+            second.readOpponentName();
+            first.readGameStarted();
+            second.readGameStarted();
+
+            second.fillInNumber();
+            assertEquals(-1, second.in.read());
+            first.readOpCode(OpCodes.FIRST_MOVE);
+            assertEquals(-1, first.in.read());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sudoku.Difficulty;
+import sudoku.PuzzleFile;
+import sudoku.Sudoku;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PuzzleFileTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void givenBoardsWrittenInEveryFormat_shouldBeReadSequentiallyAndByIndex() throws IOException {
+        Sudoku[] boards = new Sudoku[20];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = new Sudoku();
+            boards[i].generateUniquePuzzle(Difficulty.values()[i % Difficulty.values().length]);
+        }
+        for (PuzzleFile.Format format : PuzzleFile.Format.values()) {
+            Path path = dir.resolve(format.name());
+            try (PuzzleFile.Writer writer = new PuzzleFile.Writer(path, format)) {
+                for (Sudoku board : boards) {
+                    writer.write(board);
+                }
+            }
+            assertEquals(boards.length * format.getRecordSize(), Files.size(path));
+
+            try (PuzzleFile.Reader reader = new PuzzleFile.Reader(path, format)) {
+                assertEquals(boards.length, reader.size());
+                Sudoku sudoku = new Sudoku();
+                for (Sudoku board : boards) {
+                    assertTrue(reader.next(sudoku));
+                    assertEquals(board.toLine(), sudoku.toLine());
+                }
+                assertFalse(reader.next(sudoku));
+
+                reader.read(7, sudoku);
+                assertEquals(boards[7].toLine(), sudoku.toLine());
+                assertThrows(IndexOutOfBoundsException.class, () -> reader.read(boards.length, sudoku));
+            }
+        }
+    }
+
+    @Test
+    void givenTextFile_shouldAcceptLastLineWithoutNewLineAndRejectInvalidBoard() throws IOException {
+        String easy = "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+        String invalid = "55" + easy.substring(2);
+        Path path = dir.resolve("puzzles.txt");
+        Files.write(path, (easy + "\n" + invalid).getBytes(StandardCharsets.US_ASCII));
+
+        try (PuzzleFile.Reader reader = new PuzzleFile.Reader(path, PuzzleFile.Format.TEXT)) {
+            assertEquals(2, reader.size());
+            Sudoku sudoku = new Sudoku();
+            assertTrue(reader.next(sudoku));
+            assertEquals(easy, sudoku.toLine());
+            assertThrows(Sudoku.BoardInvalidException.class, () -> reader.next(sudoku));
+            assertEquals(easy, sudoku.toLine());
+            assertEquals(1, reader.getPosition());  // the invalid board's index
+            reader.seek(reader.getPosition() + 1);
+            assertFalse(reader.next(sudoku));
+        }
+
+        Files.write(path, easy.substring(1).getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> new PuzzleFile.Reader(path, PuzzleFile.Format.PACKED));
+    }
+}
@@ -0,0 +1,47 @@
+import org.junit.jupiter.api.Test;
+import sudoku.DancingLinksSolver;
+import sudoku.Difficulty;
+import sudoku.PuzzlePool;
+import sudoku.Sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PuzzlePoolTest {
+
+    @Test
+    void whenPoolIsFilled_takeShouldHitAndRefillInBackground() throws InterruptedException {
+        try (PuzzlePool pool = new PuzzlePool(1, 3, 2)) {
+            awaitFilled(pool, Difficulty.EASY, 3);
+
+            Sudoku sudoku = pool.take(Difficulty.EASY);
+            Sudoku another = pool.take(Difficulty.EASY);
+            assertNotSame(sudoku, another);
+            assertEquals(2, pool.getHits());
+            assertEquals(0, pool.getMisses());
+            assertTrue(new DancingLinksSolver().isUnique(sudoku));
+
+            awaitFilled(pool, Difficulty.EASY, 3);  // refilled once dropped to the low watermark
+        }
+    }
+
+    @Test
+    void whenPoolIsClosed_takeShouldMissAndGenerateOnCallerThread() {
+        PuzzlePool pool = new PuzzlePool(0, 1, 1);
+        pool.close();
+        while (pool.size(Difficulty.HARD) > 0) {
+            pool.take(Difficulty.HARD);
+        }
+        long misses = pool.getMisses();
+        Sudoku sudoku = pool.take(Difficulty.HARD);
+        assertEquals(misses + 1, pool.getMisses());
+        assertTrue(new DancingLinksSolver().isUnique(sudoku));
+    }
+
+    private void awaitFilled(PuzzlePool pool, Difficulty difficulty, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pool.size(difficulty) < size) {
+            assertTrue(System.currentTimeMillis() < deadline, "The pool should be refilled in time.");
+            Thread.sleep(10);
+        }
+    }
+}
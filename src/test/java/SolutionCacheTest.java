@@ -0,0 +1,66 @@
+import org.junit.jupiter.api.Test;
+import sudoku.SolutionCache;
+import sudoku.Sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolutionCacheTest {
+    static final String PUZZLE = "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+    static final String OTHER = "4.....8.5.3..........7......2.....6.....8.4......1.......6.3.7.5..2.....1.4......";
+
+    @Test
+    void givenEquivalentVariant_shouldHitAndMapTheSolutionBack() {
+        SolutionCache cache = new SolutionCache(16);
+        assertSolves(cache, PUZZLE);
+        assertEquals(1, cache.getMisses());
+
+        // transposed, the first two bands swapped, and the numbers relabeled by n -> 10 - n
+        char[] variant = new char[81];
+        for (int row = 0; row < 9; row++) {
+            for (int col = 0; col < 9; col++) {
+                int sourceRow = col < 3 ? col + 3 : col < 6 ? col - 3 : col;
+                char c = PUZZLE.charAt(sourceRow * 9 + row);
+                variant[row * 9 + col] = c == '.' ? '.' : (char) ('0' + 10 - (c - '0'));
+            }
+        }
+        assertSolves(cache, new String(variant));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void givenFullCache_shouldEvictTheLeastRecentlyUsed() {
+        SolutionCache cache = new SolutionCache(1);
+        assertSolves(cache, PUZZLE);
+        assertSolves(cache, OTHER);
+        assertEquals(1, cache.size());
+        assertSolves(cache, OTHER);
+        assertEquals(1, cache.getHits());
+        assertSolves(cache, PUZZLE);
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    void givenUnsolvableBoard_shouldCacheNoSolution() {
+        SolutionCache cache = new SolutionCache(16);
+        Sudoku sudoku = new Sudoku();
+        sudoku.setLine("12345678." + ".".repeat(8) + "9" + ".".repeat(63));  // 9 can't be at (0, 8)
+        assertFalse(cache.solve(sudoku));
+        assertFalse(cache.solve(sudoku));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    private static void assertSolves(SolutionCache cache, String line) {
+        Sudoku sudoku = new Sudoku();
+        sudoku.setLine(line);
+        assertTrue(cache.solve(sudoku));
+        assertTrue(sudoku.isSolved());
+        for (int i = 0; i < 81; i++) {
+            if (line.charAt(i) != '.') {
+                assertEquals(line.charAt(i) - '0', sudoku.get(i / 9, i % 9));
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sudoku.ConstraintPropagationSolver;
+import sudoku.DancingLinksSolver;
+import sudoku.DfsSolver;
+import sudoku.Solver;
+import sudoku.Sudoku;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolverTest {
+    Sudoku sudoku;
+
+    @BeforeEach
+    void setup() {
+        sudoku = new Sudoku();
+    }
+
+    @Test
+    void givenSolvableSudoku_whenSolveByEverySolver_shouldGetTheSameAnswer() {
+        givenSolvableSudoku();
+        Sudoku expected = solve(new DfsSolver());
+        assertSolvedWithGivens(expected);
+
+        givenSolvableSudoku();
+        Sudoku actual = solve(new ConstraintPropagationSolver());
+        assertSolvedWithGivens(actual);
+        assertEquals(expected.toString(), actual.toString());
+
+        givenSolvableSudoku();
+        actual = solve(new DancingLinksSolver());
+        assertSolvedWithGivens(actual);
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    void givenGeneratedPuzzle_whenSolveByConstraintPropagation_shouldBeValidAndSolved() {
+        sudoku.generateSolvablePuzzle();
+        sudoku.generateAnswer(new ConstraintPropagationSolver());
+        assertSolvedWithGivens(sudoku);
+    }
+
+    @Test
+    void givenHardSudoku_whenSolveByConstraintPropagation_shouldBeValidAndSolved() {
+        givenHardSudoku();
+        sudoku.generateAnswer(new ConstraintPropagationSolver());
+        assertSolvedWithGivens(sudoku);
+    }
+
+    @Test
+    void givenHardSudoku_whenSolveByDancingLinks_shouldBeValidAndSolved() {
+        givenHardSudoku();
+        sudoku.generateAnswer(new DancingLinksSolver());
+        assertSolvedWithGivens(sudoku);
+    }
+
+    @Test
+    void whenCountSolutions_shouldStopAtTheLimitAndKeepThePuzzle() {
+        DancingLinksSolver solver = new DancingLinksSolver();
+        assertEquals(2, solver.countSolutions(sudoku, 2));
+        assertFalse(solver.isUnique(sudoku));
+
+        givenSolvableSudoku();
+        String puzzle = sudoku.toString();
+        assertEquals(1, solver.countSolutions(sudoku, 2));
+        assertTrue(solver.isUnique(sudoku));
+        assertEquals(puzzle, sudoku.toString());
+
+        sudoku.put(0, 2, 1);  // the unique answer has 4 here
+        assertEquals(0, solver.countSolutions(sudoku, 2));
+    }
+
+    @Test
+    @SuppressWarnings("JavacQuirks")
+    void givenUnsolvableSudoku_whenSolve_shouldThrowAndKeepThePuzzle() {
+        byte __ = Sudoku.EMPTY;
+        byte[][] unsolvable = {  // (0, 8) can't be filled with any number
+                {1, 2, 3, 4, 5, 6, 7, 8, __},
+                {__, __, __, __, __, __, __, __, 9},
+                {__, __, __, __, __, __, __, __, __},
+                {__, __, __, __, __, __, __, __, __},
+                {__, __, __, __, __, __, __, __, __},
+                {__, __, __, __, __, __, __, __, __},
+                {__, __, __, __, __, __, __, __, __},
+                {__, __, __, __, __, __, __, __, __},
+                {__, __, __, __, __, __, __, __, __}};
+        sudoku.setBoard(unsolvable);
+        String puzzle = sudoku.toString();
+        assertThrows(Sudoku.NoSolutionsFoundException.class,
+                () -> sudoku.generateAnswer(new ConstraintPropagationSolver()));
+        assertEquals(puzzle, sudoku.toString());
+        assertThrows(Sudoku.NoSolutionsFoundException.class,
+                () -> sudoku.generateAnswer(new DancingLinksSolver()));
+        assertEquals(puzzle, sudoku.toString());
+    }
+
+    private Sudoku solve(Solver solver) {
+        sudoku.generateAnswer(solver);
+        Sudoku solved = sudoku;
+        sudoku = new Sudoku();
+        return solved;
+    }
+
+    private void assertSolvedWithGivens(Sudoku solved) {
+        assertTrue(solved.isSolved());
+        byte[][] board = new byte[9][9];
+        for (int i = 0; i < 9; i++) {
+            for (int j = 0; j < 9; j++) {
+                board[i][j] = solved.get(i, j);
+            }
+        }
+        new Sudoku().setBoard(board);  // should not throw if the answer is valid
+        if (solved.getPuzzledPoints() != null) {
+            solved.getPuzzledPoints().forEach(p -> assertFalse(solved.isEmpty(p.row, p.col)));
+        }
+    }
+
+    @SuppressWarnings("JavacQuirks")
+    void givenSolvableSudoku() {
+        byte __ = Sudoku.EMPTY;
+        byte[][] solvable = {
+                {5, 3, __, __, 7, __, __, __, __},
+                {6, __, __, 1, 9, 5, __, __, __},
+                {__, 9, 8, __, __, __, __, 6, __},
+                {8, __, __, __, 6, __, __, __, 3},
+                {4, __, __, 8, __, 3, __, __, 1},
+                {7, __, __, __, 2, __, __, __, 6},
+                {__, 6, __, __, __, __, 2, 8, __},
+                {__, __, __, 4, 1, 9, __, __, 5},
+                {__, __, __, __, 8, __, __, 7, 9}};
+        sudoku.setBoard(solvable);
+    }
+
+    @SuppressWarnings("JavacQuirks")
+    void givenHardSudoku() {
+        byte __ = Sudoku.EMPTY;
+        byte[][] hard = {  // designed against the brute-force row-major dfs
+                {__, __, __, __, __, __, __, __, __},
+                {__, __, __, __, __, 3, __, 8, 5},
+                {__, __, 1, __, 2, __, __, __, __},
+                {__, __, __, 5, __, 7, __, __, __},
+                {__, __, 4, __, __, __, 1, __, __},
+                {__, 9, __, __, __, __, __, __, __},
+                {5, __, __, __, __, __, __, 7, 3},
+                {__, __, 2, __, 1, __, __, __, __},
+                {__, __, __, __, 4, __, __, __, 9}};
+        sudoku.setBoard(hard);
+    }
+}
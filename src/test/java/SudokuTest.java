@@ -1,9 +1,10 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import sudoku.DancingLinksSolver;
+import sudoku.Difficulty;
 import sudoku.Sudoku;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 
 class SudokuTest {
     Sudoku sudoku;
@@ -119,57 +120,57 @@ class SudokuTest {
     @Test
     @SuppressWarnings("JavacQuirks")
     void whenSetInvalidBoard_shouldThrow() {
-        byte _ = Sudoku.EMPTY;
+        byte __ = Sudoku.EMPTY;
         byte[][] invalid = {
-                {3, _, _, _, _, _, _, _, _},
-                {_, _, _, _, _, _, _, _, _},
-                {_, _, _, _, 1, _, _, _, _},
-                {_, _, _, _, _, _, _, 2, _},
-                {_, _, _, _, _, _, _, _, 3},
-                {_, _, 4, _, _, _, _, _, _},
-                {_, _, _, _, _, _, _, 5, _},
-                {_, _, _, _, _, 7, _, _, _},
-                {3, _, _, _, _, _, _, _, _}};
+                {3, __, __, __, __, __, __, __, __},
+                {__, __, __, __, __, __, __, __, __},
+                {__, __, __, __, 1, __, __, __, __},
+                {__, __, __, __, __, __, __, 2, __},
+                {__, __, __, __, __, __, __, __, 3},
+                {__, __, 4, __, __, __, __, __, __},
+                {__, __, __, __, __, __, __, 5, __},
+                {__, __, __, __, __, 7, __, __, __},
+                {3, __, __, __, __, __, __, __, __}};
         assertThrows(Sudoku.BoardInvalidException.class, () -> sudoku.setBoard(invalid));
 
         byte[][] invalid2 = {
-                {3, _, _, _, _, _, _, _, _},
-                {_, _, _, _, _, _, _, _, _},
-                {_, _, 3, _, 1, _, _, _, _},
-                {_, _, _, _, _, _, _, 2, _},
-                {_, _, _, _, _, _, _, _, 3},
-                {_, _, 4, _, _, _, _, _, _},
-                {_, _, _, _, _, _, _, 5, _},
-                {_, _, _, _, _, 7, _, _, _},
-                {_, _, _, _, _, _, _, _, _}};
+                {3, __, __, __, __, __, __, __, __},
+                {__, __, __, __, __, __, __, __, __},
+                {__, __, 3, __, 1, __, __, __, __},
+                {__, __, __, __, __, __, __, 2, __},
+                {__, __, __, __, __, __, __, __, 3},
+                {__, __, 4, __, __, __, __, __, __},
+                {__, __, __, __, __, __, __, 5, __},
+                {__, __, __, __, __, 7, __, __, __},
+                {__, __, __, __, __, __, __, __, __}};
         assertThrows(Sudoku.BoardInvalidException.class, () -> sudoku.setBoard(invalid2));
 
         byte[][] invalid3 = {
-                {3, _, _, _, _, _, _, 3, _},
-                {_, _, _, _, _, _, _, _, _},
-                {_, _, _, _, 1, _, _, _, _},
-                {_, _, _, _, _, _, _, 2, _},
-                {_, _, _, _, _, _, _, _, 3},
-                {_, _, 4, _, _, _, _, _, _},
-                {_, _, _, _, _, _, _, 5, _},
-                {_, _, _, _, _, 7, _, _, _},
-                {_, _, _, _, _, _, _, _, _}};
+                {3, __, __, __, __, __, __, 3, __},
+                {__, __, __, __, __, __, __, __, __},
+                {__, __, __, __, 1, __, __, __, __},
+                {__, __, __, __, __, __, __, 2, __},
+                {__, __, __, __, __, __, __, __, 3},
+                {__, __, 4, __, __, __, __, __, __},
+                {__, __, __, __, __, __, __, 5, __},
+                {__, __, __, __, __, 7, __, __, __},
+                {__, __, __, __, __, __, __, __, __}};
         assertThrows(Sudoku.BoardInvalidException.class, () -> sudoku.setBoard(invalid3));
     }
 
     @SuppressWarnings("JavacQuirks")
     void givenSolvableSudoku() {
-        byte _ = Sudoku.EMPTY;
+        byte __ = Sudoku.EMPTY;
         byte[][] solvable = {
-                {5, 3, _, _, 7, _, _, _, _},
-                {6, _, _, 1, 9, 5, _, _, _},
-                {_, 9, 8, _, _, _, _, 6, _},
-                {8, _, _, _, 6, _, _, _, 3},
-                {4, _, _, 8, _, 3, _, _, 1},
-                {7, _, _, _, 2, _, _, _, 6},
-                {_, 6, _, _, _, _, 2, 8, _},
-                {_, _, _, 4, 1, 9, _, _, 5},
-                {_, _, _, _, 8, _, _, 7, 9}};
+                {5, 3, __, __, 7, __, __, __, __},
+                {6, __, __, 1, 9, 5, __, __, __},
+                {__, 9, 8, __, __, __, __, 6, __},
+                {8, __, __, __, 6, __, __, __, 3},
+                {4, __, __, 8, __, 3, __, __, 1},
+                {7, __, __, __, 2, __, __, __, 6},
+                {__, 6, __, __, __, __, 2, 8, __},
+                {__, __, __, 4, 1, 9, __, __, 5},
+                {__, __, __, __, 8, __, __, 7, 9}};
 
         sudoku.setBoard(solvable);
     }
@@ -180,4 +181,223 @@ class SudokuTest {
         sudoku.generateSolvablePuzzle();
         sudoku.generateAnswer();
     }
-}
\ No newline at end of file
+
+    @Test
+    void canGenerateUniquePuzzleOfEveryDifficulty() {
+        for (Difficulty difficulty : Difficulty.values()) {
+            sudoku.generateUniquePuzzle(difficulty.getClues(), 1000);
+            int clues = 81 - sudoku.getEmptyCount();
+            assertEquals(clues, sudoku.getPuzzledPoints().size());
+            assertTrue(clues >= difficulty.getClues());
+            assertTrue(new DancingLinksSolver().isUnique(sudoku));
+
+            Sudoku.Point given = sudoku.getPuzzledPoints().get(0);
+            assertThrows(Sudoku.InvalidException.class,
+                    () -> sudoku.put(given.row, given.col, sudoku.get(given.row, given.col)));
+            sudoku.generateAnswer();
+        }
+    }
+
+    @Test
+    void givenDiagonalSudoku_isValidPutShouldCheckWithoutChangingTheBoard() {
+        givenDiagonalSudoku();
+        String board = sudoku.toString();
+        assertTrue(sudoku.isValidPut(0, 1, 4));
+        assertTrue(sudoku.isValidPut(0, 0, 1));  // the cell's own number
+        assertTrue(sudoku.isValidPut(0, 0, 4));  // replacing the number
+        assertFalse(sudoku.isValidPut(0, 1, 1));
+        assertFalse(sudoku.isValidPut(9, 0, 1));
+        assertFalse(sudoku.isValidPut(0, -1, 1));
+        assertFalse(sudoku.isValidPut(0, 1, 10));
+        assertEquals(board, sudoku.toString());
+        assertThrows(Sudoku.InvalidException.class, () -> sudoku.put(9, 0, 1));
+    }
+
+    @Test
+    void givenSolvableSudoku_emptyCellsShouldBeTrackedThroughPutsAndSolving() {
+        givenSolvableSudoku();
+        assertEmptyCellsIndexed(sudoku);
+        Sudoku answer = new Sudoku();
+        sudoku.copyTo(answer);
+        answer.generateAnswer();
+        assertEquals(0, answer.getEmptyCount());
+        assertTrue(answer.isSolved());
+
+        int empties = sudoku.getEmptyCount();
+        int i = sudoku.getEmptyCell(0);
+        sudoku.put(i / 9, i % 9, answer.get(i / 9, i % 9));
+        sudoku.put(i / 9, i % 9, answer.get(i / 9, i % 9));  // replacing keeps the count
+        assertEquals(empties - 1, sudoku.getEmptyCount());
+        assertFalse(sudoku.isEmpty(i / 9, i % 9));
+        assertEmptyCellsIndexed(sudoku);
+
+        byte[] snapshot = new byte[81];
+        answer.snapshot(snapshot);
+        sudoku.restore(snapshot);
+        assertTrue(sudoku.isSolved());
+        assertThrows(IndexOutOfBoundsException.class, () -> sudoku.getEmptyCell(0));
+    }
+
+    private static void assertEmptyCellsIndexed(Sudoku sudoku) {
+        boolean[] indexed = new boolean[81];
+        for (int k = 0; k < sudoku.getEmptyCount(); k++) {
+            indexed[sudoku.getEmptyCell(k)] = true;
+        }
+        for (int i = 0; i < 81; i++) {
+            assertEquals(sudoku.isEmpty(i / 9, i % 9), indexed[i]);
+        }
+        assertEquals(sudoku.getEmptyPoints().size(), sudoku.getEmptyCount());
+    }
+
+    @Test
+    void givenGeneratedPuzzle_givensShouldBeIndexedAndPackable() {
+        sudoku.generateUniquePuzzle(Difficulty.HARD);
+        byte[] givens = new byte[Sudoku.GIVENS_SIZE];
+        sudoku.packGivens(givens, 0);
+
+        Sudoku copy = new Sudoku();
+        byte[] snapshot = new byte[81];
+        sudoku.snapshot(snapshot);
+        copy.restore(snapshot);
+        copy.unpackGivens(givens, 0);
+        for (int i = 0; i < 81; i++) {
+            assertEquals(!sudoku.isEmpty(i / 9, i % 9), sudoku.isGiven(i / 9, i % 9));
+            assertEquals(sudoku.isGiven(i / 9, i % 9), copy.isGiven(i / 9, i % 9));
+        }
+        int given = 0;
+        while (!copy.isGiven(given / 9, given % 9)) {
+            given++;
+        }
+        int row = given / 9, col = given % 9;
+        assertThrows(Sudoku.InvalidException.class, () -> copy.put(row, col, copy.get(row, col)));
+
+        assertThrows(Sudoku.BoardInvalidException.class, () -> new Sudoku().unpackGivens(givens, 0));
+    }
+
+    @Test
+    void whenBoardIsReplaced_shouldClearThePreviousGivens() {
+        sudoku.generateUniquePuzzle(Difficulty.HARD);
+        int given = 0;
+        while (!sudoku.isGiven(given / 9, given % 9)) {
+            given++;
+        }
+        byte[] empty = new byte[81];
+        new Sudoku().snapshot(empty);
+        byte[] packed = new byte[Sudoku.PACKED_SIZE];
+        new Sudoku().pack(packed, 0);
+        Sudoku[] boards = {new Sudoku(), new Sudoku(), new Sudoku()};
+        for (Sudoku board : boards) {
+            sudoku.copyTo(board);
+            assertTrue(board.isGiven(given / 9, given % 9));
+        }
+        boards[0].restore(empty);
+        boards[1].unpack(packed, 0);
+        boards[2].setLine(".".repeat(81));
+        for (Sudoku board : boards) {
+            assertFalse(board.isGiven(given / 9, given % 9));
+            assertTrue(board.isValidPut(given / 9, given % 9, 1));
+        }
+    }
+
+    @Test
+    void givenSolvableSudoku_packAndSnapshotShouldRoundTrip() {
+        givenSolvableSudoku();
+        byte[] packed = new byte[1 + Sudoku.PACKED_SIZE];
+        sudoku.pack(packed, 1);
+        byte[] snapshot = new byte[81];
+        sudoku.snapshot(snapshot);
+
+        Sudoku unpacked = new Sudoku();
+        unpacked.unpack(packed, 1);
+        assertEquals(sudoku.toString(), unpacked.toString());
+
+        Sudoku parsed = new Sudoku();
+        parsed.setLine(sudoku.toLine().replace('.', '0'));
+        assertEquals(sudoku.toLine(), parsed.toLine());
+
+        Sudoku restored = new Sudoku();
+        restored.restore(snapshot);
+        assertEquals(sudoku.toString(), restored.toString());
+        assertThrows(Sudoku.InvalidException.class, () -> restored.put(0, 2, 5));  // the masks are restored too
+
+        Sudoku copy = new Sudoku();
+        sudoku.copyTo(copy);
+        copy.generateAnswer();
+        assertTrue(copy.isSolved());
+        assertFalse(sudoku.isSolved());
+    }
+
+    @Test
+    void whenRestoreInvalidBoard_shouldThrowAndKeepTheBoard() {
+        givenSolvableSudoku();
+        String board = sudoku.toString();
+        byte[] snapshot = new byte[81];
+        sudoku.snapshot(snapshot);
+        snapshot[2] = 5;  // the row 0 has 5
+        assertThrows(Sudoku.BoardInvalidException.class, () -> sudoku.restore(snapshot));
+        assertEquals(board, sudoku.toString());
+        assertThrows(Sudoku.InvalidException.class, () -> sudoku.put(0, 2, 3));
+
+        byte[] packed = new byte[Sudoku.PACKED_SIZE];
+        sudoku.pack(packed, 0);
+        packed[1] = (byte) 0xFF;  // 15 is out of range
+        assertThrows(Sudoku.BoardInvalidException.class, () -> sudoku.unpack(packed, 0));
+        assertEquals(board, sudoku.toString());
+
+        String line = sudoku.toLine();
+        assertThrows(Sudoku.BoardInvalidException.class, () -> sudoku.setLine(line.replace('.', 'x')));
+        assertThrows(Sudoku.BoardInvalidException.class, () -> sudoku.setLine(line.substring(1)));
+        assertEquals(board, sudoku.toString());
+    }
+
+    @Test
+    void givenNakedSingle_hintShouldFindItWithoutChangingTheBoard() {
+        sudoku.setLine("12345678." + ".".repeat(72));
+        byte[] move = new byte[3];
+        assertTrue(sudoku.findForcedMove(move));
+        assertArrayEquals(new byte[]{0, 8, 9}, move);
+        assertEquals(1 << 9, sudoku.getCandidates(0, 8));
+        assertEquals(0, sudoku.getCandidates(0, 0));  // not empty
+        assertEquals("12345678." + ".".repeat(72), sudoku.toLine());
+        assertEquals(73, sudoku.getEmptyCount());
+    }
+
+    @Test
+    void givenOnlyHiddenSingle_hintShouldFindIt() {
+        char[] line = ".".repeat(81).toCharArray();
+        line[9 + 3] = line[18 + 6] = line[27] = line[54 + 1] = '1';  // the 1 of the box 0 only fits (0, 2)
+        sudoku.setLine(new String(line));
+        byte[] move = new byte[3];
+        assertTrue(sudoku.findForcedMove(move));
+        assertArrayEquals(new byte[]{0, 2, 1}, move);
+        assertEquals(new String(line), sudoku.toLine());
+    }
+
+    @Test
+    void givenNoForcedMoveOrStuckBoard_hintShouldFindNothing() {
+        byte[] move = new byte[3];
+        assertFalse(sudoku.findForcedMove(move));  // the empty board
+        sudoku.setLine("12345678." + "........9" + ".".repeat(63));  // (0, 8) has no candidates
+        assertFalse(sudoku.findForcedMove(move));
+    }
+
+    @Test
+    void whenMoveCompletesUnits_shouldTrackThemWithoutScanning() {
+        sudoku.setLine("12345678." + "456789123" + "789123456" + ".".repeat(54));
+        assertEquals(4, sudoku.getCompletedUnitCount());  // the rows 1, 2 and the boxes 0, 1
+        assertEquals(0, sudoku.getCompletedUnits(0, 8));
+        byte[] before = new byte[81];
+        sudoku.snapshot(before);
+
+        sudoku.put(0, 8, 9);
+        assertEquals(Sudoku.ROW_COMPLETED | Sudoku.BOX_COMPLETED, sudoku.getCompletedUnits(0, 8));
+        assertEquals(6, sudoku.getCompletedUnitCount());
+        assertFalse(sudoku.isSolved());
+
+        sudoku.restore(before);
+        assertEquals(4, sudoku.getCompletedUnitCount());
+        sudoku.generateAnswer(new DancingLinksSolver());
+        assertEquals(27, sudoku.getCompletedUnitCount());
+        assertTrue(sudoku.isSolved());
+    }
+}
@@ -0,0 +1,179 @@
+import p2p.FrameDecoder;
+import p2p.FrameEncoder;
+import p2p.MovePipeline;
+import p2p.OpCodes;
+import sudoku.DancingLinksSolver;
+import sudoku.Difficulty;
+import sudoku.Sudoku;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A player speaking the protocol of {@link p2p.P2PClient} to a game server, it fills in the answer cell by cell.
+ */
+class TestPlayer implements Closeable {
+    final Socket socket;
+    final DataInputStream in;
+    final OutputStream out;
+    final FrameEncoder encoder = new FrameEncoder();
+    final FrameDecoder decoder = new FrameDecoder();
+    final Sudoku sudoku = new Sudoku();
+    final Sudoku answer = new Sudoku();
+    int completedUnits;  // the units completed from the start, and then told by UNITS_COMPLETED
+
+    TestPlayer(int port) throws IOException {
+        this(port, 0);
+    }
+
+    /**
+     * @param receiveBufferSize the socket's receive buffer to set before connecting, or 0 for the default
+     */
+    TestPlayer(int port, int receiveBufferSize) throws IOException {
+        socket = new Socket();
+        if (receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(receiveBufferSize);  // a small window, for a spectator falling behind
+        }
+        socket.connect(new InetSocketAddress("127.0.0.1", port));
+        socket.setSoTimeout(10_000);
+        in = new DataInputStream(socket.getInputStream());
+        out = socket.getOutputStream();
+    }
+
+    void submitName(String name) throws IOException {
+        encoder.submitName(name).writeTo(out);
+    }
+
+    void joinLobby(String name, Difficulty difficulty) throws IOException {
+        encoder.joinLobby(difficulty, name).writeTo(out);
+    }
+
+    void joinCoop(String name, Difficulty difficulty) throws IOException {
+        encoder.joinCoop(difficulty, name).writeTo(out);
+    }
+
+    void spectate(String playerName) throws IOException {
+        encoder.spectate(playerName).writeTo(out);
+    }
+
+    String readOpponentName() throws IOException {
+        readOpCode(OpCodes.SUBMIT_NAME);
+        return decoder.readName();
+    }
+
+    void readGameStarted() throws IOException {
+        readOpCode(OpCodes.GAME_STARTED);
+        decoder.readBoard(sudoku);
+        completedUnits = sudoku.getCompletedUnitCount();
+        for (int i = 0; i < 81; i++) {
+            answer.put(i / 9, i % 9, sudoku.get(i / 9, i % 9));
+        }
+        new DancingLinksSolver().solve(answer);
+    }
+
+    /**
+     * Read the frame of the op code, the UNITS_COMPLETED frames before it are counted and skipped.
+     */
+    void readOpCode(byte opCode) throws IOException {
+        byte read;
+        while ((read = decoder.readFrame(in)) == OpCodes.UNITS_COMPLETED) {
+            decoder.readByte();
+            decoder.readByte();
+            completedUnits += Integer.bitCount(decoder.readByte());
+        }
+        assertEquals(opCode, read);
+    }
+
+    /**
+     * Fill in the answer of an empty cell.
+     */
+    void fillInNumber() throws IOException {
+        int i = sudoku.getEmptyCell(0), row = i / 9, col = i % 9;
+        int num = answer.get(row, col);
+        sudoku.put(row, col, num);
+        encoder.fillInNumber(row, col, num).writeTo(out);
+    }
+
+    /**
+     * Try to change a given cell, which should be rejected.
+     */
+    void fillInGivenCell() throws IOException {
+        int i = 0;
+        while (!sudoku.isGiven(i / 9, i % 9)) {
+            i++;
+        }
+        int num = sudoku.get(i / 9, i % 9) % 9 + 1;
+        encoder.fillInNumber(i / 9, i % 9, num).writeTo(out);
+        readOpCode(OpCodes.MOVE_REJECTED);
+        assertArrayEquals(new byte[]{(byte) (i / 9), (byte) (i % 9), (byte) num},
+                new byte[]{decoder.readByte(), decoder.readByte(), decoder.readByte()});
+    }
+
+    void readFillInNumber() throws IOException {
+        readOpCode(OpCodes.FILL_IN_NUMBER);
+        sudoku.put(decoder.readByte(), decoder.readByte(), decoder.readByte());
+    }
+
+    /**
+     * Play the game against the opponent, both have read the game started.
+     */
+    static void play(TestPlayer first, TestPlayer second) throws IOException {
+        play(first, second, false);
+    }
+
+    /**
+     * @param tryGivenCells whether every turn starts with a move on a given cell, the turn should be kept once rejected
+     */
+    static void play(TestPlayer first, TestPlayer second, boolean tryGivenCells) throws IOException {
+        first.readOpCode(OpCodes.FIRST_MOVE);
+        TestPlayer mover = first, waiter = second;
+        while (!mover.sudoku.isSolved()) {
+            if (tryGivenCells) {
+                mover.fillInGivenCell();
+            }
+            mover.fillInNumber();
+            waiter.readFillInNumber();
+            TestPlayer temp = mover;
+            mover = waiter;
+            waiter = temp;
+        }
+        first.readOpCode(OpCodes.GAME_OVER);
+        second.readOpCode(OpCodes.GAME_OVER);
+        assertEquals(27, first.completedUnits);
+        assertEquals(27, second.completedUnits);
+    }
+
+    /**
+     * Play the co-op game with the partner, both have read the game started. The players split the empty cells,
+     * and each pipelines all its moves at once before reading any response.
+     */
+    static void playCoop(TestPlayer first, TestPlayer second) throws IOException {
+        TestPlayer[] players = {first, second};
+        MovePipeline[] pipelines = {new MovePipeline(first.sudoku), new MovePipeline(second.sudoku)};
+        for (int i = 0, k = 0; i < 81; i++) {
+            if (first.sudoku.isEmpty(i / 9, i % 9)) {
+                assertTrue(pipelines[k++ % 2].move(i / 9, i % 9, first.answer.get(i / 9, i % 9)));
+            }
+        }
+        for (int p = 0; p < 2; p++) {
+            pipelines[p].flush(players[p].encoder);
+            players[p].encoder.writeTo(players[p].out);
+        }
+        for (int p = 0; p < 2; p++) {
+            while (players[p].decoder.readFrame(players[p].in) != OpCodes.GAME_OVER) {
+                pipelines[p].onFrame(players[p].decoder);
+            }
+            assertTrue(pipelines[p].isSolved());
+            assertEquals(0, pipelines[p].getPendingMoves());
+            assertEquals(first.answer.toString(), pipelines[p].getBoard().toString());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
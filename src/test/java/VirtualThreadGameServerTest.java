@@ -0,0 +1,150 @@
+import multiplayer.VirtualThreadGameServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import p2p.OpCodes;
+import sudoku.Difficulty;
+import sudoku.PuzzlePool;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadGameServerTest {
+    VirtualThreadGameServer server;
+    PuzzlePool puzzlePool;
+
+    @BeforeEach
+    void setup() throws IOException {
+        puzzlePool = new PuzzlePool(1, 4, 1);
+        server = new VirtualThreadGameServer(0, puzzlePool);
+        new Thread(server).start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        puzzlePool.close();
+    }
+
+    @Test
+    void givenPairOfPlayers_shouldPlayTheGameUntilOver() throws IOException {
+        try (TestPlayer first = new TestPlayer(server.getPort());
+             TestPlayer second = new TestPlayer(server.getPort())) {
+            first.submitName("Johnny");
+            while (server.getMatchmaker().getQueueDepth(Difficulty.MEDIUM) == 0) {
+                Thread.onSpinWait();  // the one joining first moves first
+            }
+            second.submitName("Waterball");
+            assertEquals("Waterball", first.readOpponentName());
+            assertEquals("Johnny", second.readOpponentName());
+            first.readGameStarted();
+            second.readGameStarted();
+            TestPlayer.play(first, second);
+            assertEquals(-1, first.in.read());
+            assertEquals(-1, second.in.read());
+        }
+    }
+
+    @Test
+    void whenPlayerMovesOnGivenCells_shouldRejectAndKeepTheGame() throws IOException {
+        try (TestPlayer first = new TestPlayer(server.getPort());
+             TestPlayer second = new TestPlayer(server.getPort())) {
+            first.submitName("Johnny");
+            while (server.getMatchmaker().getQueueDepth(Difficulty.MEDIUM) == 0) {
+                Thread.onSpinWait();
+            }
+            second.submitName("Waterball");
+            first.readOpponentName();
+            second.readOpponentName();
+            first.readGameStarted();
+            second.readGameStarted();
+            TestPlayer.play(first, second, true);
+        }
+    }
+
+    @Test
+    void whenWaitingPlayerRequestsHint_shouldAnswerAndKeepTheGame() throws IOException {
+        try (TestPlayer first = new TestPlayer(server.getPort());
+             TestPlayer second = new TestPlayer(server.getPort())) {
+            first.submitName("Johnny");
+            while (server.getMatchmaker().getQueueDepth(Difficulty.MEDIUM) == 0) {
+                Thread.onSpinWait();
+            }
+            second.submitName("Waterball");
+            first.readOpponentName();
+            second.readOpponentName();
+            first.readGameStarted();
+            second.readGameStarted();
+            int i = second.sudoku.getEmptyCell(0);
+            second.encoder.hintRequest(i / 9, i % 9).writeTo(second.out);  // not the player's turn, still answered
+            second.readOpCode(OpCodes.HINT);
+            assertEquals(i / 9, second.decoder.readByte());
+            assertEquals(i % 9, second.decoder.readByte());
+            assertEquals(second.sudoku.getCandidates(i / 9, i % 9), second.decoder.readUnsignedShort());
+            byte row = second.decoder.readByte(), col = second.decoder.readByte(), num = second.decoder.readByte();
+            assertEquals(second.answer.get(row, col), num);
+            TestPlayer.play(first, second);
+        }
+    }
+
+    @Test
+    void givenWaitingPlayerGone_shouldMatchTheNextPlayerWithTheOneAfter() throws IOException {
+        try (TestPlayer second = new TestPlayer(server.getPort());
+             TestPlayer third = new TestPlayer(server.getPort())) {
+            try (TestPlayer gone = new TestPlayer(server.getPort())) {
+                gone.submitName("Gone");
+                while (server.getMatchmaker().getQueueDepth(Difficulty.MEDIUM) == 0) {
+                    Thread.onSpinWait();
+                }
+            }
+            second.submitName("Johnny");
+            while (server.getMatchmaker().getMatches() == 0 ||
+                    server.getMatchmaker().getQueueDepth(Difficulty.MEDIUM) == 0) {
+                Thread.onSpinWait();  // matched with the gone player, and then back to the lobby
+            }
+            third.submitName("Waterball");
+            assertEquals("Waterball", second.readOpponentName());
+            assertEquals("Johnny", third.readOpponentName());
+            second.readGameStarted();
+            third.readGameStarted();
+            TestPlayer.play(second, third);
+        }
+    }
+
+    /**
+     * Every game is started and then left idle, waiting for the first move.
+     * Run with: mvn test -Dgroups=load -DexcludedGroups= [-Dload.games=10000],
+     * both ends of every game are in this JVM so it takes about 4 file descriptors per game.
+     */
+    @Test
+    @Tag("load")
+    void shouldHoldManyConcurrentIdleGames() throws IOException {
+        int games = Integer.getInteger("load.games", 10_000);
+        List<TestPlayer> players = new ArrayList<>(games * 2);
+        try {
+            for (int i = 0; i < games * 2; i++) {
+                TestPlayer player = new TestPlayer(server.getPort());
+                player.submitName("Player" + i);
+                players.add(player);
+            }
+            for (TestPlayer player : players) {
+                player.readOpponentName();
+                player.readGameStarted();
+            }
+            assertEquals(games, server.getActiveGames());
+            int platformThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+            assertTrue(platformThreads < 100, "The games should not hold platform threads, given " + platformThreads);
+            System.out.printf("%d idle games, %d platform threads, %d MB heap used.%n", games, platformThreads,
+                    (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) >> 20);
+        } finally {
+            for (TestPlayer player : players) {
+                player.close();
+            }
+        }
+    }
+}